@@ -0,0 +1,50 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import xadrez.Movimento;
+import xadrez.PartidaXadrez;
+import xadrez.aberturas.LivroAberturas;
+import xadrez.busca.Busca;
+import xadrez.busca.BuscaParalela;
+import xadrez.busca.TabelaTransposicao;
+
+// Procura o melhor movimento de uma posicao e mostra o resultado da busca; com um livro de
+// aberturas, uma posicao que esteja nele e respondida pelo livro, sem busca.
+// Uso: Analisa [milissegundos] ["fen"] [threads] [livro.xlb]
+public class Analisa {
+
+	private static final int TAMANHO_TABELA_MB = 64;
+
+	public static void main(String[] args) throws IOException {
+		long tempo = args.length > 0 ? Long.parseLong(args[0]) : 5000L;
+		PartidaXadrez partida = args.length > 1 ? new PartidaXadrez(args[1]) : new PartidaXadrez();
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+		if (args.length > 3) {
+			int movimento = LivroAberturas.abre(Paths.get(args[3])).melhor(partida);
+			if (movimento != 0) {
+				System.out.println("Movimento do livro: " + Movimento.toString(movimento));
+				return;
+			}
+		}
+
+		try (BuscaParalela busca = new BuscaParalela(threads, TAMANHO_TABELA_MB)) {
+			int movimento = busca.procura(partida, tempo, Busca.PROFUNDIDADE_MAXIMA);
+
+			StringBuilder pv = new StringBuilder();
+			for (int m : busca.getVariacaoPrincipal()) {
+				pv.append(' ').append(Movimento.toString(m));
+			}
+			TabelaTransposicao tabela = busca.getTabela();
+			System.out.println("Melhor movimento: " + (movimento == 0 ? "nenhum" : Movimento.toString(movimento)));
+			System.out.println("Pontuacao: " + busca.getPontuacao() + "  Profundidade: " + busca.getProfundidade());
+			System.out.println("Variacao principal:" + pv);
+			System.out.println("Threads: " + busca.getThreads() + "  Nos: " + busca.getNos() + "  Nos/s: "
+					+ busca.getNosPorSegundo());
+			System.out.printf("Tabela de transposicao: %d MB, %.1f%% de acertos, %d permil ocupada%n",
+					tabela.getMegabytes(), tabela.getTaxaAcerto() * 100, tabela.getOcupacaoPermil());
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+package application;
+
+import xadrez.Cor;
+import xadrez.PartidaXadrez;
+import xadrez.PosicaoXadrez;
+
+// Microbenchmarks do motor de regras, com aquecimento e medicao em ns por operacao.
+// Uso: Benchmark [iteracoes]
+public class Benchmark {
+
+	// Abertura italiana com roques, usada para medir performMovimentoXadrez
+	private static final String[] PARTIDA = { "e2e4", "e7e5", "g1f3", "b8c6", "f1c4", "f8c5", "c2c3", "g8f6",
+			"d2d4", "e5d4", "c3d4", "c5b4", "b1c3", "f6e4", "e1g1", "e4c3", "b2c3", "b4c3", "d1b3", "d7d5" };
+
+	private static long sorvedouro;
+
+	public static void main(String[] args) {
+		int iteracoes = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+		PartidaXadrez partida = new PartidaXadrez();
+		for (int i = 0; i < 8; i++) {
+			joga(partida, PARTIDA[i]);
+		}
+		PosicaoXadrez cavalo = PosicaoXadrez.de('f', 3);
+		PosicaoXadrez rainha = PosicaoXadrez.de('d', 1);
+		int[] movimentos = new int[256];
+
+		mede("movimentosPossiveis(PosicaoXadrez)", iteracoes, () -> {
+			sorvedouro += partida.movimentosPossiveis(cavalo)[3][4] ? 1 : 0;
+			sorvedouro += partida.movimentosPossiveis(rainha)[4][1] ? 1 : 0;
+		});
+		mede("geraMovimentos (pseudo-legais)", iteracoes, () -> sorvedouro += partida.geraMovimentos(movimentos));
+		mede("legalMoves", iteracoes, () -> sorvedouro += partida.legalMoves(movimentos));
+		mede("casaAtacada (deteccao de xeque)", iteracoes * 10, () -> {
+			sorvedouro += partida.casaAtacada(PosicaoXadrez.de('e', 1), Cor.PRETO) ? 1 : 0;
+			sorvedouro += partida.casaAtacada(PosicaoXadrez.de('e', 8), Cor.BRANCO) ? 1 : 0;
+		});
+		mede("performMovimentoXadrez (partida de " + PARTIDA.length + " lances)", iteracoes / 20, () -> {
+			PartidaXadrez p = new PartidaXadrez();
+			for (String lance : PARTIDA) {
+				joga(p, lance);
+			}
+			sorvedouro += p.getTurno();
+		});
+		System.out.println("(" + sorvedouro + ")");
+	}
+
+	private static void joga(PartidaXadrez partida, String lance) {
+		partida.performMovimentoXadrez(PosicaoXadrez.de(lance.charAt(0), lance.charAt(1) - '0'),
+				PosicaoXadrez.de(lance.charAt(2), lance.charAt(3) - '0'));
+	}
+
+	private static void mede(String nome, int iteracoes, Runnable operacao) {
+		for (int i = 0; i < iteracoes; i++) {
+			operacao.run();
+		}
+		long inicio = System.nanoTime();
+		for (int i = 0; i < iteracoes; i++) {
+			operacao.run();
+		}
+		long nanos = System.nanoTime() - inicio;
+		System.out.printf("%-50s %10.1f ns/op%n", nome, (double) nanos / iteracoes);
+	}
+}
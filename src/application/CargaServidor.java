@@ -0,0 +1,180 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import servidor.Comando;
+import servidor.DiarioLances;
+import servidor.EstadoSessao;
+import servidor.GerenciadorSessoes;
+import xadrez.Movimento;
+import xadrez.PartidaXadrez;
+import xadrez.PosicaoXadrez;
+
+// Gerador de carga para o GerenciadorSessoes. Cada sessao joga partidas aleatorias: quando um
+// lance e publicado a sessao fica pronta, e o gerador envia o proximo lance das sessoes prontas
+// no ritmo pedido (0 = sem limite). Mede lances por segundo e a latencia entre o envio do
+// comando e a publicacao do resultado. Com um arquivo de diario, cada lance so e publicado
+// depois de gravado, e o gerador mostra as metricas do diario.
+// Uso: CargaServidor [sessoes] [lancesPorSessao] [threads] [lancesPorSegundo] [diario]
+//  ou  CargaServidor verifica diario
+public class CargaServidor {
+
+	private static final ConcurrentLinkedQueue<EstadoSessao> prontas = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger publicados = new AtomicInteger();
+	private static final AtomicInteger erros = new AtomicInteger();
+	private static long[] latencias;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length > 1 && args[0].equals("verifica")) {
+			verifica(Paths.get(args[1]));
+			return;
+		}
+		int sessoes = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+		int lancesPorSessao = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long taxa = args.length > 3 ? Long.parseLong(args[3]) : 0L;
+		DiarioLances diario = args.length > 4 ? DiarioLances.abre(Paths.get(args[4])) : null;
+
+		int total = sessoes * lancesPorSessao;
+		latencias = new long[total];
+		int[] restantes = new int[sessoes];
+		PartidaXadrez espelho = new PartidaXadrez();
+		int[] movimentos = new int[Movimento.MAXIMO_POR_POSICAO];
+
+		try (GerenciadorSessoes gerenciador = new GerenciadorSessoes(threads, CargaServidor::publicado, diario)) {
+			// Sessoes recuperadas do diario ficam paradas; as novas sao numeradas a partir de primeira
+			long primeira = 0;
+			for (int i = 0; i < sessoes; i++) {
+				long id = gerenciador.criaSessao().getId();
+				if (i == 0) {
+					primeira = id;
+				}
+				restantes[i] = lancesPorSessao;
+				prontas.add(gerenciador.getSessao(id).getUltimo());
+			}
+
+			long inicio = System.nanoTime();
+			long enviados = 0;
+			while (publicados.get() < total) {
+				long permitidos = taxa > 0 ? (System.nanoTime() - inicio) * taxa / 1_000_000_000L - enviados
+						: Long.MAX_VALUE;
+				EstadoSessao estado = permitidos > 0 ? prontas.poll() : null;
+				if (estado == null) {
+					LockSupport.parkNanos(20_000L);
+					continue;
+				}
+				long id = estado.getSessao();
+				int i = (int) (id - primeira);
+				if (restantes[i] == 0) {
+					continue;
+				}
+				espelho.restauraEstado(estado.getEstado());
+				int n = espelho.legalMoves(movimentos);
+				if (n == 0 || espelho.getRelogioMeiosLances() >= 100) {
+					gerenciador.envia(id, Comando.reinicia());
+					continue;
+				}
+				restantes[i]--;
+				enviados++;
+				int movimento = movimentos[ThreadLocalRandom.current().nextInt(n)];
+				gerenciador.envia(id, Comando.lance(PosicaoXadrez.daCasa(Movimento.origem(movimento)),
+						PosicaoXadrez.daCasa(Movimento.destino(movimento))));
+			}
+			double segundos = (System.nanoTime() - inicio) / 1e9;
+
+			long[] ordenadas = latencias.clone();
+			Arrays.sort(ordenadas);
+			System.out.printf("%d sessoes, %d threads, %d lances em %.2f s: %.0f lances/s, %d erros%n", sessoes,
+					threads, total, segundos, total / segundos, erros.get());
+			System.out.printf("Latencia por lance (us): p50 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+					percentil(ordenadas, 0.50), percentil(ordenadas, 0.99), percentil(ordenadas, 0.999),
+					ordenadas[ordenadas.length - 1] / 1e3);
+		} finally {
+			if (diario != null) {
+				diario.close();
+				System.out.printf("Diario: %d registros em %d lotes (%.1f por lote), %.0f lances/s%n",
+						diario.getRegistros(), diario.getLotes(), diario.getRegistrosPorLote(),
+						diario.getLancesPorSegundo());
+				System.out.printf("Force (us): media %.1f  p50 < %.1f  p99 < %.1f  max %.1f%n",
+						diario.getLatenciaMediaSincronizacaoNanos() / 1e3,
+						diario.getPercentilSincronizacaoNanos(0.50) / 1e3,
+						diario.getPercentilSincronizacaoNanos(0.99) / 1e3,
+						diario.getLatenciaMaximaSincronizacaoNanos() / 1e3);
+				if (diario.getFalhaOuvinte() != null) {
+					System.out.println("Ouvinte falhou na thread do diario: " + diario.getFalhaOuvinte());
+				}
+			}
+		}
+	}
+
+	// Recuperacao do diario no limite do buffer da compactacao: 2048 sessoes vivas com um lance cada
+	// enchem exatamente os registros do buffer, e o encerramento da maior sessao, que ja terminou,
+	// vem depois deles. O diario e reaberto duas vezes, para ler tambem o arquivo compactado
+	private static void verifica(Path arquivo) throws IOException {
+		int vivas = 2048;
+		Files.deleteIfExists(arquivo);
+		DiarioLances diario = DiarioLances.abre(arquivo);
+		try (GerenciadorSessoes gerenciador = new GerenciadorSessoes(1, null, diario)) {
+			for (int i = 0; i <= vivas; i++) {
+				gerenciador.criaSessao();
+			}
+			for (long id = 1; id <= vivas; id++) {
+				gerenciador.envia(id, Comando.lance(PosicaoXadrez.de('e', 2), PosicaoXadrez.de('e', 4)));
+			}
+			gerenciador.encerra(vivas + 1);
+		}
+		diario.close();
+
+		int erros = 0;
+		for (int abertura = 1; abertura <= 2; abertura++) {
+			diario = DiarioLances.abre(arquivo);
+			try (GerenciadorSessoes gerenciador = new GerenciadorSessoes(1, null, diario)) {
+				if (gerenciador.getQuantidadeSessoes() != vivas) {
+					System.out.println("ERRO: " + gerenciador.getQuantidadeSessoes() + " sessoes recuperadas, esperado "
+							+ vivas);
+					erros++;
+				}
+				for (long id = 1; id <= vivas; id++) {
+					if (gerenciador.getSessao(id).getUltimo().getVersao() != 1) {
+						System.out.println("ERRO: sessao " + id + " recuperada na versao "
+								+ gerenciador.getSessao(id).getUltimo().getVersao());
+						erros++;
+					}
+				}
+				// So na ultima abertura, para que a primeira compacte o diario sem a sessao nova
+				long nova = abertura == 2 ? gerenciador.criaSessao().getId() : vivas + 2;
+				if (nova != vivas + 2) {
+					System.out.println("ERRO: sessao nova numerada " + nova + ", esperado " + (vivas + 2));
+					erros++;
+				}
+			}
+			diario.close();
+			System.out.println("Abertura " + abertura + ": " + Files.size(arquivo) + " bytes");
+		}
+		System.out.println(erros == 0 ? "Diario recuperado" : erros + " erro(s)");
+	}
+
+	// Chamado pelas threads das sessoes: so registra a medida e devolve a sessao ao gerador
+	private static void publicado(EstadoSessao estado) {
+		if (estado.getComando().getTipo() == Comando.LANCE) {
+			latencias[publicados.getAndIncrement()] = estado.getLatenciaNanos();
+			if (estado.getErro() != null) {
+				erros.incrementAndGet();
+			}
+		}
+		prontas.add(estado);
+	}
+
+	private static double percentil(long[] ordenadas, double p) {
+		return ordenadas[Math.min(ordenadas.length - 1, (int) (p * ordenadas.length))] / 1e3;
+	}
+
+}
@@ -0,0 +1,56 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import xadrez.PartidaXadrez;
+import xadrez.aberturas.GeradorLivro;
+import xadrez.aberturas.LivroAberturas;
+import xadrez.pgn.LeitorPgn;
+
+// Monta um livro de aberturas com os primeiros meios-lances das partidas de arquivos PGN e mede
+// a consulta da posicao inicial no livro mapeado.
+// Uso: ConstroiLivro livro.xlb [meios-lances] arquivo.pgn...
+public class ConstroiLivro {
+
+	private static final int CONSULTAS = 1_000_000;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Uso: ConstroiLivro livro" + LivroAberturas.EXTENSAO + " [meios-lances] arquivo.pgn...");
+			return;
+		}
+		Path livro = Paths.get(args[0]);
+		int primeiro = 1;
+		int meiosLances = GeradorLivro.MEIOS_LANCES_PADRAO;
+		if (args[1].matches("\\d+")) {
+			meiosLances = Integer.parseInt(args[1]);
+			primeiro = 2;
+		}
+
+		long inicio = System.nanoTime();
+		GeradorLivro gerador = new GeradorLivro(meiosLances, 1);
+		LeitorPgn leitor = new LeitorPgn();
+		for (int i = primeiro; i < args.length; i++) {
+			leitor.le(Paths.get(args[i]), gerador);
+		}
+		long partidas = gerador.getPartidas();
+		int entradas = gerador.grava(livro);
+		System.out.printf("%d partidas, %d entradas em %.2f s%n", partidas, entradas,
+				(System.nanoTime() - inicio) / 1e9);
+
+		LivroAberturas aberturas = LivroAberturas.abre(livro);
+		long chave = new PartidaXadrez().getChave();
+		int[] movimentos = new int[64];
+		int[] pesos = new int[64];
+		long soma = 0;
+		inicio = System.nanoTime();
+		for (int i = 0; i < CONSULTAS; i++) {
+			soma += aberturas.consulta(chave, movimentos, pesos);
+		}
+		System.out.printf("Consulta da posicao inicial: %.1f ns, %d movimentos%n",
+				(double) (System.nanoTime() - inicio) / CONSULTAS, soma / CONSULTAS);
+	}
+
+}
@@ -0,0 +1,70 @@
+package application;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import xadrez.PartidaXadrez;
+import xadrez.acervo.EscritorAcervo;
+import xadrez.acervo.LeitorAcervo;
+import xadrez.pgn.LeitorPgn;
+
+// Converte arquivos PGN num acervo binario e compara o espaco e o tempo de reproduzir todas as
+// partidas lendo o PGN e lendo o acervo.
+// Uso: ConverteAcervo acervo.xac arquivo.pgn...
+public class ConverteAcervo {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Uso: ConverteAcervo acervo" + LeitorAcervo.EXTENSAO + " arquivo.pgn...");
+			return;
+		}
+		Path acervo = Paths.get(args[0]);
+		long bytesPgn = 0;
+		long inicio = System.nanoTime();
+		LeitorPgn leitor = new LeitorPgn();
+		try (EscritorAcervo escritor = new EscritorAcervo(acervo)) {
+			for (int i = 1; i < args.length; i++) {
+				Path arquivo = Paths.get(args[i]);
+				bytesPgn += Files.size(arquivo);
+				leitor.le(arquivo, jogo -> {
+					try {
+						escritor.adiciona(jogo);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			}
+			System.out.printf("%d partidas, %d meios-lances convertidos em %.2f s%n", escritor.getQuantidade(),
+					escritor.getMeiosLances(), (System.nanoTime() - inicio) / 1e9);
+		}
+
+		long bytesAcervo = Files.size(acervo);
+		LeitorAcervo leitorAcervo = LeitorAcervo.abre(acervo);
+		long meiosLances = 0;
+		for (int i = 0; i < leitorAcervo.getQuantidade(); i++) {
+			meiosLances += leitorAcervo.getQuantidadeMovimentos(i);
+		}
+		System.out.printf("PGN: %d bytes (%.2f por meio-lance); acervo: %d bytes (%.2f por meio-lance, %.1fx menor)%n",
+				bytesPgn, (double) bytesPgn / meiosLances, bytesAcervo, (double) bytesAcervo / meiosLances,
+				(double) bytesPgn / bytesAcervo);
+
+		inicio = System.nanoTime();
+		for (int i = 1; i < args.length; i++) {
+			leitor.le(Paths.get(args[i]), jogo -> {
+			});
+		}
+		double segundosPgn = (System.nanoTime() - inicio) / 1e9;
+		PartidaXadrez partida = new PartidaXadrez();
+		inicio = System.nanoTime();
+		for (int i = 0; i < leitorAcervo.getQuantidade(); i++) {
+			leitorAcervo.le(i, partida, null);
+		}
+		double segundosAcervo = (System.nanoTime() - inicio) / 1e9;
+		System.out.printf("Reproducao de todas as partidas: PGN %.2f s, acervo %.2f s (%.0f ns por meio-lance)%n",
+				segundosPgn, segundosAcervo, segundosAcervo * 1e9 / meiosLances);
+	}
+
+}
@@ -0,0 +1,64 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import xadrez.PartidaXadrez;
+import xadrez.finais.GeradorFinais;
+import xadrez.finais.Material;
+import xadrez.finais.SondaFinais;
+import xadrez.finais.TabelaFinal;
+
+// Gera as tabelas de finais pedidas (e as de que elas dependem) no diretorio, abre o diretorio
+// pela sonda mapeada em memoria e mede o tempo de uma consulta.
+// Uso: GeraFinais [diretorio] [material...]    ex.: GeraFinais finais KQK KRK KPK KBNK
+public class GeraFinais {
+
+	private static final String[] PADRAO = { "KQK", "KRK", "KPK", "KBNK" };
+	private static final int CONSULTAS = 2_000_000;
+
+	public static void main(String[] args) throws IOException {
+		Path diretorio = Paths.get(args.length > 0 ? args[0] : "finais");
+		String[] materiais = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : PADRAO;
+		Files.createDirectories(diretorio);
+
+		GeradorFinais gerador = new GeradorFinais(diretorio, ForkJoinPool.commonPool());
+		System.out.println("Threads: " + ForkJoinPool.commonPool().getParallelism());
+		for (String nome : materiais) {
+			long inicio = System.nanoTime();
+			TabelaFinal tabela = gerador.gera(Material.deNome(nome));
+			System.out.printf("%-6s mate mais longo em %d meios-lances, %d ms%n", tabela.getMaterial(),
+					tabela.getMaiorDistancia(), (System.nanoTime() - inicio) / 1_000_000);
+		}
+
+		SondaFinais sonda = SondaFinais.abre(diretorio);
+		PartidaXadrez partida = new PartidaXadrez("8/8/3k4/8/8/8/1Q6/K7 w - - 0 1");
+		int valor = sonda.consulta(partida);
+		System.out.println(partida.toFen() + ": " + descreve(valor));
+		long soma = 0;
+		long inicio = System.nanoTime();
+		for (int i = 0; i < CONSULTAS; i++) {
+			soma += sonda.consulta(partida);
+		}
+		System.out.printf("Consulta: %.1f ns (%d tabelas abertas, %d)%n",
+				(double) (System.nanoTime() - inicio) / CONSULTAS, sonda.getQuantidadeTabelas(), soma);
+	}
+
+	private static String descreve(int valor) {
+		if (valor == SondaFinais.DESCONHECIDO) {
+			return "fora das tabelas";
+		}
+		if (SondaFinais.vitoria(valor)) {
+			return "vitoria, mate em " + (SondaFinais.meiosLancesAteMate(valor) + 1) / 2 + " lances";
+		}
+		if (SondaFinais.derrota(valor)) {
+			return "derrota, mate em " + SondaFinais.meiosLancesAteMate(valor) / 2 + " lances";
+		}
+		return "empate";
+	}
+
+}
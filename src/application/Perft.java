@@ -0,0 +1,116 @@
+package application;
+
+import xadrez.Movimento;
+import xadrez.PartidaXadrez;
+
+// Conta as folhas da arvore de movimentos legais ate a profundidade pedida.
+// Uso: Perft [profundidade] [divide] ["fen"]  ou  Perft verifica
+public class Perft {
+
+	// Posicoes de referencia com as contagens conhecidas a partir da profundidade 1
+	private static final String[] FENS = { "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+			"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+			"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+			"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10" };
+	private static final long[][] CONTAGENS = { { 20L, 400L, 8902L, 197281L, 4865609L },
+			{ 48L, 2039L, 97862L, 4085603L }, { 14L, 191L, 2812L, 43238L, 674624L },
+			{ 6L, 264L, 9467L, 422333L }, { 44L, 1486L, 62379L, 2103487L }, { 46L, 2079L, 89890L, 3894594L } };
+
+	private int[][] movimentos;
+
+	public Perft(int profundidadeMaxima) {
+		movimentos = new int[profundidadeMaxima + 1][Movimento.MAXIMO_POR_POSICAO];
+	}
+
+	public long perft(PartidaXadrez partida, int profundidade) {
+		if (profundidade == 0) {
+			return 1L;
+		}
+		int[] lista = movimentos[profundidade];
+		int n = partida.legalMoves(lista);
+		if (profundidade == 1) {
+			return n;
+		}
+		long folhas = 0L;
+		for (int i = 0; i < n; i++) {
+			partida.makeMove(lista[i]);
+			folhas += perft(partida, profundidade - 1);
+			partida.unmakeMove();
+		}
+		return folhas;
+	}
+
+	public long divide(PartidaXadrez partida, int profundidade) {
+		int[] lista = partida.legalMoves();
+		long folhas = 0L;
+		for (int movimento : lista) {
+			partida.makeMove(movimento);
+			long parcial = perft(partida, profundidade - 1);
+			partida.unmakeMove();
+			System.out.println(Movimento.toString(movimento) + ": " + parcial);
+			folhas += parcial;
+		}
+		return folhas;
+	}
+
+	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equals("verifica")) {
+			verifica();
+			return;
+		}
+		int profundidade = 5;
+		boolean divide = false;
+		String fen = null;
+		for (String arg : args) {
+			if (arg.equals("divide")) {
+				divide = true;
+			} else if (arg.indexOf('/') >= 0) {
+				fen = arg;
+			} else {
+				profundidade = Integer.parseInt(arg);
+			}
+		}
+
+		PartidaXadrez partida = (fen == null) ? new PartidaXadrez() : new PartidaXadrez(fen);
+		Perft perft = new Perft(profundidade);
+		for (int p = divide ? profundidade : 1; p <= profundidade; p++) {
+			long inicio = System.nanoTime();
+			long folhas = divide ? perft.divide(partida, p) : perft.perft(partida, p);
+			imprime(p, folhas, System.nanoTime() - inicio);
+			System.out.println();
+		}
+	}
+
+	// Roda todas as posicoes de referencia; roques, en passant e promocoes aparecem em todas elas
+	private static void verifica() {
+		int erros = 0;
+		for (int i = 0; i < FENS.length; i++) {
+			System.out.println(FENS[i]);
+			PartidaXadrez partida = new PartidaXadrez(FENS[i]);
+			Perft perft = new Perft(CONTAGENS[i].length);
+			for (int p = 1; p <= CONTAGENS[i].length; p++) {
+				long inicio = System.nanoTime();
+				long folhas = perft.perft(partida, p);
+				imprime(p, folhas, System.nanoTime() - inicio);
+				if (folhas == CONTAGENS[i][p - 1]) {
+					System.out.println(" (ok)");
+				} else {
+					System.out.println(" (ERRO, esperado " + CONTAGENS[i][p - 1] + ")");
+					erros++;
+				}
+			}
+			if (!partida.toFen().equals(FENS[i])) {
+				System.out.println("ERRO: toFen devolveu " + partida.toFen());
+				erros++;
+			}
+		}
+		System.out.println(erros == 0 ? "Todas as contagens conferem" : erros + " erro(s)");
+	}
+
+	private static void imprime(int profundidade, long folhas, long nanos) {
+		System.out.print("Profundidade " + profundidade + ": " + folhas + " nos, " + nanos / 1000000 + " ms, "
+				+ (nanos == 0 ? 0 : folhas * 1000000000L / nanos) + " nos/s");
+	}
+}
@@ -0,0 +1,33 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import xadrez.pgn.LeitorPgn;
+
+// Reproduz todas as partidas de um arquivo PGN e informa as que tem lances invalidos.
+// Uso: ReproduzPgn arquivo.pgn
+public class ReproduzPgn {
+
+	private static long lances;
+	private static long erros;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Uso: ReproduzPgn arquivo.pgn");
+			return;
+		}
+		long inicio = System.nanoTime();
+		long partidas = new LeitorPgn().le(Paths.get(args[0]), jogo -> {
+			lances += jogo.getQuantidade();
+			if (jogo.getErro() != null) {
+				erros++;
+				System.out.println("Partida " + jogo.getNumero() + ": " + jogo.getErro());
+			}
+		});
+		double segundos = (System.nanoTime() - inicio) / 1e9;
+		System.out.printf("%d partidas, %d lances, %d com erro em %.2f s (%.0f lances/s)%n", partidas, lances, erros,
+				segundos, lances / segundos);
+	}
+
+}
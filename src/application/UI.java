@@ -44,7 +44,7 @@ public class UI {
 			String s = sc.nextLine();
 			char coluna = s.charAt(0);
 			int linha = Integer.parseInt(s.substring(1));
-			return new PosicaoXadrez(coluna, linha);
+			return PosicaoXadrez.de(coluna, linha);
 		} catch (RuntimeException e) {
 			throw new InputMismatchException("Erro lendo posicao de xadrez, valores validos sao de a1 ate h8");
 		}
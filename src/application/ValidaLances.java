@@ -0,0 +1,87 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import xadrez.EstadoPartida;
+import xadrez.Movimento;
+import xadrez.PartidaXadrez;
+import xadrez.lote.ResultadoValidacao;
+import xadrez.lote.ValidadorPartidas;
+
+// Valida em lote, com o ValidadorPartidas, um arquivo com uma partida por linha em notacao de
+// coordenadas (e2e4 e7e5 ...) e informa as partidas com lance ilegal.
+// Uso: ValidaLances arquivo  ou  ValidaLances verifica
+public class ValidaLances {
+
+	// Partidas de referencia: lances, indice esperado do primeiro lance invalido e se termina em mate
+	private static final String[] PARTIDAS = { "f2f3 e7e5 g2g4 d8h4", "e2e4 e7e5 f1c4 b8c6 d1h5 g8f6 h5f7",
+			"e2e4q", "e2e4 e7e5 g1f3 b8c6 e1g1", "f2f3 e7e5 g2g4 d8h4 a2a3" };
+	private static final int[] INVALIDOS = { -1, -1, 0, 4, 4 };
+	private static final boolean[] MATES = { true, true, false, false, true };
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Uso: ValidaLances arquivo  ou  ValidaLances verifica");
+			return;
+		}
+		if (args[0].equals("verifica")) {
+			verifica();
+			return;
+		}
+		List<int[]> partidas = new ArrayList<>();
+		long lances = 0;
+		for (String linha : Files.readAllLines(Paths.get(args[0]))) {
+			int[] codificados = codifica(linha);
+			partidas.add(codificados);
+			lances += codificados.length;
+		}
+		long inicio = System.nanoTime();
+		ResultadoValidacao[] resultados = ValidadorPartidas.validaTodas(partidas);
+		double segundos = (System.nanoTime() - inicio) / 1e9;
+		int erros = 0;
+		for (int i = 0; i < resultados.length; i++) {
+			if (!resultados[i].eValida()) {
+				erros++;
+				System.out.println("Partida " + (i + 1) + ": " + resultados[i]);
+			}
+		}
+		System.out.printf("%d partidas, %d lances, %d com erro em %.2f s (%.0f lances/s)%n", resultados.length,
+				lances, erros, segundos, lances / segundos);
+	}
+
+	private static void verifica() {
+		ValidadorPartidas validador = new ValidadorPartidas();
+		int erros = 0;
+		for (int i = 0; i < PARTIDAS.length; i++) {
+			ResultadoValidacao resultado = validador.valida(codifica(PARTIDAS[i]));
+			EstadoPartida estado = resultado.getEstadoFinal();
+			boolean mate = estado.getXequeMate();
+			System.out.print(
+					PARTIDAS[i] + ": " + resultado + (mate ? ", xeque-mate, vencedor " + estado.getJogadorAtual() : ""));
+			// Depois do mate o jogador atual e o vencedor, na fotografia e na partida restaurada dela
+			boolean vencedor = !mate || estado.getJogadorAtual() != estado.getVez()
+					&& new PartidaXadrez(estado).getJogadorAtual() == estado.getJogadorAtual();
+			if (resultado.getPrimeiroInvalido() == INVALIDOS[i] && mate == MATES[i] && vencedor) {
+				System.out.println(" (ok)");
+			} else {
+				System.out.println(" (ERRO)");
+				erros++;
+			}
+		}
+		System.out.println(erros == 0 ? "Todas as partidas conferem" : erros + " erro(s)");
+	}
+
+	private static int[] codifica(String linha) {
+		String[] textos = linha.trim().split("\\s+");
+		if (textos.length == 1 && textos[0].isEmpty()) {
+			return new int[0];
+		}
+		return Arrays.stream(textos).mapToInt(Movimento::deTexto).toArray();
+	}
+
+}
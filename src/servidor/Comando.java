@@ -0,0 +1,60 @@
+package servidor;
+
+import xadrez.PosicaoXadrez;
+
+// Pedido enviado a uma sessao: um lance ou o reinicio da partida. Guarda o instante do envio
+// para que a latencia ate a publicacao do resultado possa ser medida
+public final class Comando {
+
+	public static final int LANCE = 0;
+	public static final int REINICIA = 1;
+
+	private final int tipo;
+	private final PosicaoXadrez origem;
+	private final PosicaoXadrez destino;
+	private final String promocao;
+	private final long enviadoEm;
+
+	private Comando(int tipo, PosicaoXadrez origem, PosicaoXadrez destino, String promocao) {
+		this.tipo = tipo;
+		this.origem = origem;
+		this.destino = destino;
+		this.promocao = promocao;
+		this.enviadoEm = System.nanoTime();
+	}
+
+	// promocao: B, C, T ou Q; null promove a rainha
+	public static Comando lance(PosicaoXadrez origem, PosicaoXadrez destino, String promocao) {
+		return new Comando(LANCE, origem, destino, promocao);
+	}
+
+	public static Comando lance(PosicaoXadrez origem, PosicaoXadrez destino) {
+		return lance(origem, destino, null);
+	}
+
+	public static Comando reinicia() {
+		return new Comando(REINICIA, null, null, null);
+	}
+
+	public int getTipo() {
+		return tipo;
+	}
+
+	public PosicaoXadrez getOrigem() {
+		return origem;
+	}
+
+	public PosicaoXadrez getDestino() {
+		return destino;
+	}
+
+	public String getPromocao() {
+		return promocao;
+	}
+
+	// System.nanoTime() no momento em que o comando foi criado
+	public long getEnviadoEm() {
+		return enviadoEm;
+	}
+
+}
@@ -0,0 +1,421 @@
+package servidor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.CRC32C;
+
+// Diario de escrita antecipada das sessoes: cada lance aceito (e cada criacao, reinicio e
+// encerramento de sessao) vira um registro de 16 bytes anexado ao arquivo: sessao (8), dados (4,
+// ver registro) e CRC32C dos 12 anteriores (4). Uma unica thread escritora junta o que as
+// sessoes enfileiraram desde a ultima gravacao num lote, grava e faz um force por lote (group
+// commit), e so entao publica os estados das sessoes; assim nenhum resultado e publicado antes
+// de estar no disco. Ao abrir, o diario le os registros validos (um registro pela metade no fim,
+// de uma queda durante a gravacao, e descartado), reescreve o arquivo so com as sessoes vivas e
+// os lances desde o ultimo reinicio, e guarda esses lances para o GerenciadorSessoes reconstruir
+// as partidas
+public class DiarioLances implements AutoCloseable {
+
+	static final int CRIA = 0;
+	static final int LANCE = 1;
+	static final int REINICIA = 2;
+	static final int ENCERRA = 3;
+	// Comando recusado: nada e gravado, mas a publicacao espera o lote para manter a ordem
+	static final int SEM_REGISTRO = -1;
+
+	private static final int TAMANHO_REGISTRO = 16;
+	private static final int MAXIMO_LOTE = 4096;
+	private static final String[] PROMOCOES = { "Q", "B", "C", "T" };
+
+	private final Path arquivo;
+	private final FileChannel canal;
+	private final LinkedBlockingQueue<Pendente> fila = new LinkedBlockingQueue<>();
+	private final Pendente fim = new Pendente(0, SEM_REGISTRO, null, null);
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAXIMO_LOTE * TAMANHO_REGISTRO)
+			.order(ByteOrder.LITTLE_ENDIAN);
+	private final CRC32C crc = new CRC32C();
+	private final Thread escritor;
+
+	private Map<Long, int[]> recuperadas;
+	private final long maiorSessao;
+	private volatile boolean fechado;
+	private volatile IOException falha;
+	// Primeira excecao lancada por um ouvinte; a thread escritora continua publicando os outros estados
+	private volatile RuntimeException falhaOuvinte;
+
+	// Metricas, escritas so pela thread escritora
+	private final long abertoEm = System.nanoTime();
+	private volatile long registros;
+	private volatile long lances;
+	private volatile long lotes;
+	private volatile long sincronizacoes;
+	private volatile long tempoSincronizacao;
+	private volatile long maiorSincronizacao;
+	// Sincronizacoes por faixa de duracao: a faixa b vai de 2^(b-1) a 2^b - 1 nanossegundos
+	private final AtomicLongArray faixasSincronizacao = new AtomicLongArray(64);
+
+	private DiarioLances(Path arquivo, FileChannel canal, Map<Long, int[]> recuperadas, long maiorSessao) {
+		this.arquivo = arquivo;
+		this.canal = canal;
+		this.recuperadas = recuperadas;
+		this.maiorSessao = maiorSessao;
+		escritor = new Thread(this::escreve, "diario-lances");
+		escritor.setDaemon(true);
+		escritor.start();
+	}
+
+	public static DiarioLances abre(Path arquivo) throws IOException {
+		TreeMap<Long, Historico> vivas = new TreeMap<>();
+		long maiorSessao = 0;
+		if (Files.exists(arquivo)) {
+			try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+				ByteBuffer leitura = ByteBuffer.allocate(MAXIMO_LOTE * TAMANHO_REGISTRO).order(ByteOrder.LITTLE_ENDIAN);
+				CRC32C crc = new CRC32C();
+				boolean valido = true;
+				while (valido && canal.read(leitura) > 0) {
+					leitura.flip();
+					while (leitura.remaining() >= TAMANHO_REGISTRO) {
+						long sessao = leitura.getLong(leitura.position());
+						int dados = leitura.getInt(leitura.position() + 8);
+						if (verificacao(crc, sessao, dados) != leitura.getInt(leitura.position() + 12)) {
+							// Registro pela metade ou corrompido: o diario termina no anterior
+							valido = false;
+							break;
+						}
+						leitura.position(leitura.position() + TAMANHO_REGISTRO);
+						maiorSessao = Math.max(maiorSessao, sessao);
+						aplica(vivas, sessao, dados);
+					}
+					leitura.compact();
+				}
+			}
+		}
+
+		// Reescreve o diario compacto num arquivo temporario e o troca de uma vez pelo antigo
+		Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+		try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer escrita = ByteBuffer.allocateDirect(MAXIMO_LOTE * TAMANHO_REGISTRO).order(ByteOrder.LITTLE_ENDIAN);
+			CRC32C crc = new CRC32C();
+			for (Map.Entry<Long, Historico> sessao : vivas.entrySet()) {
+				Historico historico = sessao.getValue();
+				for (int i = -1; i < historico.quantidade; i++) {
+					acrescenta(canal, escrita, crc, sessao.getKey(), i < 0 ? registro(CRIA) : historico.registros[i]);
+				}
+			}
+			// O encerramento da maior sessao ja criada preserva a numeracao, mesmo que ela nao esteja viva
+			if (maiorSessao > 0 && !vivas.containsKey(maiorSessao)) {
+				acrescenta(canal, escrita, crc, maiorSessao, registro(ENCERRA));
+			}
+			grava(canal, escrita);
+			canal.force(true);
+		}
+		Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		sincronizaDiretorio(arquivo);
+
+		Map<Long, int[]> recuperadas = new TreeMap<>();
+		for (Map.Entry<Long, Historico> sessao : vivas.entrySet()) {
+			recuperadas.put(sessao.getKey(), Arrays.copyOf(sessao.getValue().registros, sessao.getValue().quantidade));
+		}
+		FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		return new DiarioLances(arquivo, canal, recuperadas, maiorSessao);
+	}
+
+	private static void aplica(TreeMap<Long, Historico> vivas, long sessao, int dados) {
+		switch (tipo(dados)) {
+		case CRIA:
+			vivas.put(sessao, new Historico());
+			break;
+		case ENCERRA:
+			vivas.remove(sessao);
+			break;
+		case REINICIA:
+			if (vivas.containsKey(sessao)) {
+				vivas.get(sessao).quantidade = 0;
+			}
+			break;
+		default:
+			// Lances de uma sessao encerrada (ja estavam na fila dela) sao ignorados
+			Historico historico = vivas.get(sessao);
+			if (historico != null) {
+				historico.adiciona(dados);
+			}
+		}
+	}
+
+	// Garante que a troca de nome chegou ao disco; nem todo sistema deixa abrir um diretorio
+	private static void sincronizaDiretorio(Path arquivo) {
+		Path diretorio = arquivo.toAbsolutePath().getParent();
+		try (FileChannel canal = FileChannel.open(diretorio, StandardOpenOption.READ)) {
+			canal.force(true);
+		} catch (IOException e) {
+			// Sem sincronizacao do diretorio a troca ainda e atomica, so pode nao ter chegado ao disco
+		}
+	}
+
+	// Lances desde o ultimo reinicio de cada sessao viva na abertura, por sessao; so a primeira
+	// chamada devolve os lances, para eles nao ficarem presos na memoria
+	synchronized Map<Long, int[]> recuperadas() {
+		Map<Long, int[]> resultado = recuperadas;
+		recuperadas = new TreeMap<>();
+		return resultado;
+	}
+
+	// Maior numero de sessao que o diario ja viu, viva ou nao
+	long getMaiorSessao() {
+		return maiorSessao;
+	}
+
+	static int registro(int tipo) {
+		return tipo << 16;
+	}
+
+	// promocao: B, C ou T; qualquer outra e rainha, como em PartidaXadrez.recolocaPecaPromovida
+	static int lance(int origem, int destino, String promocao) {
+		int peca = 0;
+		for (int i = 1; i < PROMOCOES.length; i++) {
+			if (PROMOCOES[i].equals(promocao)) {
+				peca = i;
+			}
+		}
+		return registro(LANCE) | peca << 12 | origem << 6 | destino;
+	}
+
+	static int tipo(int dados) {
+		return dados >>> 16;
+	}
+
+	static int origem(int dados) {
+		return (dados >>> 6) & 63;
+	}
+
+	static int destino(int dados) {
+		return dados & 63;
+	}
+
+	static String promocao(int dados) {
+		return PROMOCOES[(dados >>> 12) & 3];
+	}
+
+	// Enfileira o registro (ou SEM_REGISTRO) para o proximo lote; depois do force, estado e
+	// publicado por sessao, se nao forem null
+	void registra(long id, int dados, Sessao sessao, EstadoSessao estado) {
+		if (falha != null) {
+			throw new IllegalStateException("Diario " + arquivo + " parou depois de uma falha de gravacao", falha);
+		}
+		if (fechado) {
+			throw new IllegalStateException("Diario " + arquivo + " fechado");
+		}
+		fila.add(new Pendente(id, dados, sessao, estado));
+	}
+
+	private void escreve() {
+		ArrayList<Pendente> lote = new ArrayList<>(MAXIMO_LOTE);
+		boolean terminou = false;
+		try {
+			while (!terminou) {
+				Pendente primeiro = fila.take();
+				lote.add(primeiro);
+				fila.drainTo(lote, MAXIMO_LOTE - 1);
+				int quantidade = 0;
+				int quantidadeLances = 0;
+				for (Pendente pendente : lote) {
+					if (pendente == fim) {
+						terminou = true;
+					} else if (pendente.dados != SEM_REGISTRO) {
+						poe(buffer, crc, pendente.id, pendente.dados);
+						quantidade++;
+						if (tipo(pendente.dados) == LANCE) {
+							quantidadeLances++;
+						}
+					}
+				}
+				if (quantidade > 0) {
+					grava(canal, buffer);
+					long inicio = System.nanoTime();
+					canal.force(false);
+					long duracao = System.nanoTime() - inicio;
+					sincronizacoes++;
+					tempoSincronizacao += duracao;
+					maiorSincronizacao = Math.max(maiorSincronizacao, duracao);
+					faixasSincronizacao.incrementAndGet(64 - Long.numberOfLeadingZeros(duracao));
+				}
+				registros += quantidade;
+				lances += quantidadeLances;
+				lotes++;
+				for (Pendente pendente : lote) {
+					if (pendente.estado != null) {
+						try {
+							pendente.sessao.publica(pendente.estado);
+						} catch (RuntimeException e) {
+							if (falhaOuvinte == null) {
+								falhaOuvinte = e;
+							}
+						}
+					}
+				}
+				lote.clear();
+			}
+		} catch (IOException e) {
+			// Os estados do lote que falhou, e dos seguintes, nunca sao publicados
+			falha = e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void poe(ByteBuffer destino, CRC32C crc, long sessao, int dados) {
+		destino.putLong(sessao).putInt(dados).putInt(verificacao(crc, sessao, dados));
+	}
+
+	// Como poe, mas grava o buffer antes se ele estiver cheio
+	private static void acrescenta(FileChannel canal, ByteBuffer destino, CRC32C crc, long sessao, int dados)
+			throws IOException {
+		if (destino.remaining() < TAMANHO_REGISTRO) {
+			grava(canal, destino);
+		}
+		poe(destino, crc, sessao, dados);
+	}
+
+	// CRC32C dos 12 primeiros bytes do registro, em little-endian como no arquivo
+	private static int verificacao(CRC32C crc, long sessao, int dados) {
+		crc.reset();
+		for (int i = 0; i < 64; i += 8) {
+			crc.update((int) (sessao >>> i));
+		}
+		for (int i = 0; i < 32; i += 8) {
+			crc.update(dados >>> i);
+		}
+		return (int) crc.getValue();
+	}
+
+	private static void grava(FileChannel canal, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			canal.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	// Registros gravados no disco, de qualquer tipo
+	public long getRegistros() {
+		return registros;
+	}
+
+	public long getLances() {
+		return lances;
+	}
+
+	public double getLancesPorSegundo() {
+		return lances * 1e9 / (System.nanoTime() - abertoEm);
+	}
+
+	public long getLotes() {
+		return lotes;
+	}
+
+	public double getRegistrosPorLote() {
+		long n = lotes;
+		return n == 0 ? 0 : (double) registros / n;
+	}
+
+	public long getSincronizacoes() {
+		return sincronizacoes;
+	}
+
+	public double getLatenciaMediaSincronizacaoNanos() {
+		long n = sincronizacoes;
+		return n == 0 ? 0 : (double) tempoSincronizacao / n;
+	}
+
+	public long getLatenciaMaximaSincronizacaoNanos() {
+		return maiorSincronizacao;
+	}
+
+	// Limite superior, em potencia de 2, da duracao abaixo da qual ficou a fracao p das sincronizacoes
+	public long getPercentilSincronizacaoNanos(double p) {
+		long total = 0;
+		for (int b = 0; b < 64; b++) {
+			total += faixasSincronizacao.get(b);
+		}
+		long acumulado = 0;
+		for (int b = 0; b < 64; b++) {
+			acumulado += faixasSincronizacao.get(b);
+			if (acumulado > 0 && acumulado >= p * total) {
+				return b == 63 ? Long.MAX_VALUE : (1L << b) - 1;
+			}
+		}
+		return 0;
+	}
+
+	// Falha de gravacao que parou o diario, ou null
+	public IOException getFalha() {
+		return falha;
+	}
+
+	// Primeira excecao lancada por um ouvinte ao publicar um estado ja gravado, ou null
+	public RuntimeException getFalhaOuvinte() {
+		return falhaOuvinte;
+	}
+
+	// Grava e publica o que ja estava na fila e fecha o arquivo
+	@Override
+	public void close() throws IOException {
+		if (fechado) {
+			return;
+		}
+		fechado = true;
+		fila.add(fim);
+		try {
+			escritor.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		canal.close();
+		if (falha != null) {
+			throw falha;
+		}
+	}
+
+	private static final class Pendente {
+
+		final long id;
+		final int dados;
+		final Sessao sessao;
+		final EstadoSessao estado;
+
+		Pendente(long id, int dados, Sessao sessao, EstadoSessao estado) {
+			this.id = id;
+			this.dados = dados;
+			this.sessao = sessao;
+			this.estado = estado;
+		}
+
+	}
+
+	private static final class Historico {
+
+		int[] registros = new int[16];
+		int quantidade;
+
+		void adiciona(int dados) {
+			if (quantidade == registros.length) {
+				registros = Arrays.copyOf(registros, quantidade * 2);
+			}
+			registros[quantidade++] = dados;
+		}
+
+	}
+
+}
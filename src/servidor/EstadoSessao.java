@@ -0,0 +1,55 @@
+package servidor;
+
+import xadrez.EstadoPartida;
+
+// O que uma sessao publica depois de cada comando: a fotografia imutavel da posicao e o
+// resultado do comando. Pode ser lido por qualquer thread
+public final class EstadoSessao {
+
+	private final long sessao;
+	private final long versao;
+	private final Comando comando;
+	private final EstadoPartida estado;
+	private final String erro;
+	private final long publicadoEm;
+
+	EstadoSessao(long sessao, long versao, Comando comando, EstadoPartida estado, String erro) {
+		this.sessao = sessao;
+		this.versao = versao;
+		this.comando = comando;
+		this.estado = estado;
+		this.erro = erro;
+		this.publicadoEm = System.nanoTime();
+	}
+
+	public long getSessao() {
+		return sessao;
+	}
+
+	// Cresce a cada comando processado pela sessao, aceito ou nao
+	public long getVersao() {
+		return versao;
+	}
+
+	public Comando getComando() {
+		return comando;
+	}
+
+	public EstadoPartida getEstado() {
+		return estado;
+	}
+
+	// Mensagem do ResultadoMovimento que recusou o comando, ou null se ele foi aplicado
+	public String getErro() {
+		return erro;
+	}
+
+	public long getPublicadoEm() {
+		return publicadoEm;
+	}
+
+	public long getLatenciaNanos() {
+		return publicadoEm - comando.getEnviadoEm();
+	}
+
+}
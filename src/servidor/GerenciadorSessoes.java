@@ -0,0 +1,97 @@
+package servidor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hospeda muitas sessoes em poucas threads: cada sessao e um ator (ver Sessao) e todas
+// compartilham um pool fixo com uma fila FIFO unica, para que uma sessao reagendada va para o
+// fim da fila e nenhuma outra fique esperando alem da sua vez. Com um DiarioLances, as sessoes
+// vivas no diario sao reconstruidas na criacao do gerenciador, com os mesmos numeros, e as
+// criacoes e encerramentos de sessao tambem vao para o diario
+public class GerenciadorSessoes implements AutoCloseable {
+
+	private final ConcurrentHashMap<Long, Sessao> sessoes = new ConcurrentHashMap<>();
+	private final AtomicLong proximoId = new AtomicLong(1);
+	private final ExecutorService executor;
+	private final OuvinteSessao ouvinte;
+	private final DiarioLances diario;
+
+	public GerenciadorSessoes(OuvinteSessao ouvinte) {
+		this(Runtime.getRuntime().availableProcessors(), ouvinte);
+	}
+
+	public GerenciadorSessoes(int threads, OuvinteSessao ouvinte) {
+		this(threads, ouvinte, null);
+	}
+
+	// O diario nao e fechado pelo gerenciador: feche-o depois dele, para gravar o que ficou na fila
+	public GerenciadorSessoes(int threads, OuvinteSessao ouvinte, DiarioLances diario) {
+		this.executor = Executors.newFixedThreadPool(threads);
+		this.ouvinte = ouvinte;
+		this.diario = diario;
+		if (diario != null) {
+			for (Map.Entry<Long, int[]> recuperada : diario.recuperadas().entrySet()) {
+				Sessao sessao = new Sessao(recuperada.getKey(), executor, ouvinte, diario);
+				sessao.recupera(recuperada.getValue());
+				sessoes.put(sessao.getId(), sessao);
+			}
+			proximoId.set(diario.getMaiorSessao() + 1);
+		}
+	}
+
+	public Sessao criaSessao() {
+		long id = proximoId.getAndIncrement();
+		Sessao sessao = new Sessao(id, executor, ouvinte, diario);
+		if (diario != null) {
+			diario.registra(id, DiarioLances.registro(DiarioLances.CRIA), null, null);
+		}
+		sessoes.put(id, sessao);
+		return sessao;
+	}
+
+	public Sessao getSessao(long id) {
+		Sessao sessao = sessoes.get(id);
+		if (sessao == null) {
+			throw new IllegalArgumentException("Sessao " + id + " nao existe");
+		}
+		return sessao;
+	}
+
+	public void envia(long id, Comando comando) {
+		getSessao(id).envia(comando);
+	}
+
+	// Comandos ja na fila ainda sao aplicados; novos sao recusados
+	public void encerra(long id) {
+		Sessao sessao = sessoes.remove(id);
+		if (sessao != null) {
+			sessao.encerra();
+			if (diario != null) {
+				diario.registra(id, DiarioLances.registro(DiarioLances.ENCERRA), null, null);
+			}
+		}
+	}
+
+	public int getQuantidadeSessoes() {
+		return sessoes.size();
+	}
+
+	@Override
+	public void close() {
+		for (Sessao sessao : sessoes.values()) {
+			sessao.encerra();
+		}
+		sessoes.clear();
+		executor.shutdown();
+		try {
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
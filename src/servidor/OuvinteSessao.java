@@ -0,0 +1,10 @@
+package servidor;
+
+// Recebe as publicacoes das sessoes. E chamado pela thread que esta executando a sessao, ou
+// pela do DiarioLances depois da gravacao, entao deve ser rapido e nao pode bloquear. Na thread
+// do diario uma excecao nao interrompe as publicacoes; a primeira fica em getFalhaOuvinte
+public interface OuvinteSessao {
+
+	void publicado(EstadoSessao estado);
+
+}
@@ -0,0 +1,144 @@
+package servidor;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import xadrez.PartidaXadrez;
+import xadrez.PosicaoXadrez;
+import xadrez.ResultadoMovimento;
+
+// Uma partida hospedada no servidor, no modelo de ator: os comandos entram por uma fila sem
+// travas e sao aplicados por no maximo uma thread de cada vez, entao a PartidaXadrez nunca e
+// compartilhada. A sessao so ocupa uma thread do executor enquanto ha comandos na fila. Com um
+// DiarioLances, cada resultado vai para o diario e e publicado pela thread dele depois de gravado
+public class Sessao {
+
+	// Comandos aplicados por vez antes de devolver a thread, para as outras sessoes nao esperarem
+	private static final int COMANDOS_POR_VEZ = 32;
+
+	private final long id;
+	private final Executor executor;
+	private final OuvinteSessao ouvinte;
+	private final DiarioLances diario;
+	private final PartidaXadrez partida = new PartidaXadrez();
+	private final ConcurrentLinkedQueue<Comando> fila = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean agendada = new AtomicBoolean();
+	private final Runnable execucao = this::executa;
+
+	private long versao;
+	private volatile EstadoSessao ultimo;
+	private volatile boolean encerrada;
+
+	Sessao(long id, Executor executor, OuvinteSessao ouvinte, DiarioLances diario) {
+		this.id = id;
+		this.executor = executor;
+		this.ouvinte = ouvinte;
+		this.diario = diario;
+		ultimo = new EstadoSessao(id, 0, Comando.reinicia(), partida.getEstado(), null);
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	// Ultimo estado publicado; nunca null
+	public EstadoSessao getUltimo() {
+		return ultimo;
+	}
+
+	public void envia(Comando comando) {
+		if (encerrada) {
+			throw new IllegalStateException("Sessao " + id + " encerrada");
+		}
+		fila.add(comando);
+		agenda();
+	}
+
+	void encerra() {
+		encerrada = true;
+	}
+
+	private void agenda() {
+		if (agendada.compareAndSet(false, true)) {
+			executor.execute(execucao);
+		}
+	}
+
+	private void executa() {
+		try {
+			for (int i = 0; i < COMANDOS_POR_VEZ; i++) {
+				Comando comando = fila.poll();
+				if (comando == null) {
+					break;
+				}
+				aplica(comando);
+			}
+		} finally {
+			agendada.set(false);
+		}
+		// Um comando que chegou depois do ultimo poll, mas antes de liberar a sessao, nao pode ficar parado
+		if (!fila.isEmpty()) {
+			agenda();
+		}
+	}
+
+	private void aplica(Comando comando) {
+		int registro = DiarioLances.SEM_REGISTRO;
+		String erro = null;
+		if (comando.getTipo() == Comando.REINICIA) {
+			partida.reinicia();
+			registro = DiarioLances.registro(DiarioLances.REINICIA);
+		} else {
+			erro = aplicaLance(comando);
+			if (erro == null) {
+				registro = DiarioLances.lance(comando.getOrigem().getCasa(), comando.getDestino().getCasa(),
+						partida.getPromovido() == null ? null : comando.getPromocao());
+			}
+		}
+		versao++;
+		EstadoSessao estado = new EstadoSessao(id, versao, comando, partida.getEstado(), erro);
+		if (diario != null) {
+			diario.registra(id, registro, this, estado);
+		} else {
+			publica(estado);
+		}
+	}
+
+	// Mensagem de ResultadoMovimento que recusou o lance, ou null se ele foi aplicado
+	private String aplicaLance(Comando comando) {
+		int codigo = partida.tentaMovimentoXadrez(comando.getOrigem(), comando.getDestino());
+		if (codigo != ResultadoMovimento.OK) {
+			return ResultadoMovimento.mensagem(codigo);
+		}
+		if (partida.getPromovido() != null) {
+			partida.recolocaPecaPromovida(comando.getPromocao() == null ? "Q" : comando.getPromocao());
+		}
+		return null;
+	}
+
+	void publica(EstadoSessao estado) {
+		ultimo = estado;
+		if (ouvinte != null) {
+			ouvinte.publicado(estado);
+		}
+	}
+
+	// Reconstroi a partida com os lances do diario, antes de a sessao receber comandos; nada e
+	// publicado, e a versao passa a contar os lances reaplicados
+	void recupera(int[] registros) {
+		Comando comando = ultimo.getComando();
+		for (int registro : registros) {
+			comando = Comando.lance(PosicaoXadrez.daCasa(DiarioLances.origem(registro)),
+					PosicaoXadrez.daCasa(DiarioLances.destino(registro)), DiarioLances.promocao(registro));
+			String erro = aplicaLance(comando);
+			if (erro != null) {
+				throw new IllegalStateException("Lance " + comando.getOrigem() + comando.getDestino()
+						+ " do diario recusado na sessao " + id + ": " + erro);
+			}
+			versao++;
+		}
+		ultimo = new EstadoSessao(id, versao, comando, partida.getEstado(), null);
+	}
+
+}
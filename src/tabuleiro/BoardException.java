@@ -4,8 +4,17 @@ public class BoardException extends RuntimeException {
 
 	private static final long serialVersionUID = 1L;
 
+	// Lancada nas consultas fora do tabuleiro, que sao comuns ao sondar casas; criada uma vez e sem pilha
+	public static final BoardException FORA_DO_TABULEIRO = new BoardException("Posicao fora do tabuleiro", false);
+
 	public BoardException(String msg) {
 		super(msg);
 	}
 
+	// Sem pilha nem supressao: a excecao pode ser criada uma vez e lancada sempre que preciso,
+	// custando o mesmo que um retorno
+	protected BoardException(String msg, boolean pilha) {
+		super(msg, null, false, pilha);
+	}
+
 }
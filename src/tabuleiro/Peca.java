@@ -16,6 +16,9 @@ public abstract class Peca {
 
 	public abstract boolean[][] movimentosPossiveis();
 
+	// Indice do bitboard em que o tabuleiro registra a peca, de 0 ate Tabuleiro.NUMERO_BITBOARDS - 1
+	public abstract int getIndiceBitboard();
+
 	public boolean movimentoPossivel(Posicao posicao) {
 		return movimentosPossiveis()[posicao.getLinha()][posicao.getColuna()];
 	}
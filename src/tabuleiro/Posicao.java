@@ -1,34 +1,55 @@
 package tabuleiro;
 
-public class Posicao {
+// Imutavel: uma mesma instancia pode ser compartilhada por pecas, tabuleiros e threads.
+// As posicoes de 0 a 7 em linha e coluna sao criadas uma vez e devolvidas por valueOf
+public final class Posicao {
 
-	private int linha;
-	private int coluna;
+	private static final Posicao[] CACHE = new Posicao[64];
+
+	static {
+		for (int i = 0; i < 64; i++) {
+			CACHE[i] = new Posicao(i / 8, i % 8);
+		}
+	}
+
+	private final int linha;
+	private final int coluna;
 
 	public Posicao(int linha, int coluna) {
 		this.linha = linha;
 		this.coluna = coluna;
 	}
 
-	public int getLinha() {
-		return linha;
+	public static Posicao valueOf(int linha, int coluna) {
+		if (linha >= 0 && linha < 8 && coluna >= 0 && coluna < 8) {
+			return CACHE[linha * 8 + coluna];
+		}
+		return new Posicao(linha, coluna);
 	}
 
-	public void setLinha(int linha) {
-		this.linha = linha;
+	public int getLinha() {
+		return linha;
 	}
 
 	public int getColuna() {
 		return coluna;
 	}
 
-	public void setColuna(int coluna) {
-		this.coluna = coluna;
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Posicao)) {
+			return false;
+		}
+		Posicao outra = (Posicao) obj;
+		return linha == outra.linha && coluna == outra.coluna;
 	}
 
-	public void setValores(int linha, int coluna) {
-		this.linha = linha;
-		this.coluna = coluna;
+	@Override
+	public int hashCode() {
+		return linha * 31 + coluna;
 	}
 
 	@Override
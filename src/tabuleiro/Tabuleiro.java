@@ -2,17 +2,33 @@ package tabuleiro;
 
 public class Tabuleiro {
 
+	public static final int NUMERO_BITBOARDS = 16;
+
 	private int linhas;
 	private int colunas;
-	private Peca[][] pecas;
+	private Peca[] pecas;
+	private Posicao[] posicoes;
+
+	// Um bit por casa, casa = linha * colunas + coluna
+	private long ocupacao;
+	private long[] bitboards = new long[NUMERO_BITBOARDS];
 
 	public Tabuleiro(int linhas, int colunas) {
 		if (linhas < 1 || colunas < 1) {
 			throw new BoardException("Erro criando tabuleiro: e necessario que haja pelo menos 1 linha e 1 coluna");
 		}
+		if (linhas * colunas > 64) {
+			throw new BoardException("Erro criando tabuleiro: o tabuleiro pode ter no maximo 64 casas");
+		}
 		this.linhas = linhas;
 		this.colunas = colunas;
-		pecas = new Peca[linhas][colunas];
+		pecas = new Peca[linhas * colunas];
+		posicoes = new Posicao[linhas * colunas];
+		for (int i = 0; i < linhas; i++) {
+			for (int j = 0; j < colunas; j++) {
+				posicoes[casa(i, j)] = Posicao.valueOf(i, j);
+			}
+		}
 	}
 
 	public int getLinhas() {
@@ -23,42 +39,89 @@ public class Tabuleiro {
 		return colunas;
 	}
 
+	public long getOcupacao() {
+		return ocupacao;
+	}
+
+	public long getBitboard(int indice) {
+		return bitboards[indice];
+	}
+
+	public int casa(int linha, int coluna) {
+		return linha * colunas + coluna;
+	}
+
+	public int casa(Posicao posicao) {
+		return casa(posicao.getLinha(), posicao.getColuna());
+	}
+
+	public Posicao posicao(int casa) {
+		return posicoes[casa];
+	}
+
 	public Peca peca(int linha, int coluna) {
 		if (!existePosicao(linha, coluna)) {
-			throw new BoardException("Posicao fora do tabuleiro");
+			throw BoardException.FORA_DO_TABULEIRO;
 		}
-		return pecas[linha][coluna];
+		return pecas[casa(linha, coluna)];
 	}
 
 	public Peca peca(Posicao posicao) {
 		if (!existePosicao(posicao)) {
-			throw new BoardException("Posicao fora do tabuleiro");
+			throw BoardException.FORA_DO_TABULEIRO;
+		}
+		return pecas[casa(posicao)];
+	}
+
+	public Peca pecaNaCasa(int casa) {
+		if (casa < 0 || casa >= pecas.length) {
+			throw BoardException.FORA_DO_TABULEIRO;
 		}
-		return pecas[posicao.getLinha()][posicao.getColuna()];
+		return pecas[casa];
 	}
 
 	public void coloquePeca(Peca peca, Posicao posicao) {
 		if (haUmaPeca(posicao)) {
 			throw new BoardException("Ja existe uma peca na posicao " + posicao);
 		}
-		pecas[posicao.getLinha()][posicao.getColuna()] = peca;
-		peca.posicao = posicao;
+		coloquePeca(peca, casa(posicao));
+	}
+
+	public void coloquePeca(Peca peca, int casa) {
+		if (pecas[casa] != null) {
+			throw new BoardException("Ja existe uma peca na posicao " + posicoes[casa]);
+		}
+		pecas[casa] = peca;
+		ocupacao |= 1L << casa;
+		bitboards[peca.getIndiceBitboard()] |= 1L << casa;
+		peca.posicao = posicoes[casa];
 	}
 
 	public Peca removePeca(Posicao posicao) {
 		if (!existePosicao(posicao)) {
-			throw new BoardException("Posicao fora do tabuleiro");
+			throw BoardException.FORA_DO_TABULEIRO;
 		}
-		if (peca(posicao) == null) {
+		return removePeca(casa(posicao));
+	}
+
+	public Peca removePeca(int casa) {
+		Peca aux = pecas[casa];
+		if (aux == null) {
 			return null;
 		}
-		Peca aux = peca(posicao);
 		aux.posicao = null;
-		pecas[posicao.getLinha()][posicao.getColuna()] = null;
+		pecas[casa] = null;
+		ocupacao &= ~(1L << casa);
+		bitboards[aux.getIndiceBitboard()] &= ~(1L << casa);
 		return aux;
 	}
 
-	private boolean existePosicao(int linha, int coluna) {
+	// Casa da posicao, ou -1 se ela estiver fora do tabuleiro; nao lanca excecao
+	public int casaSeExistir(Posicao posicao) {
+		return existePosicao(posicao) ? casa(posicao) : -1;
+	}
+
+	public boolean existePosicao(int linha, int coluna) {
 		return linha >= 0 && linha < linhas && coluna >= 0 && coluna < colunas;
 	}
 
@@ -68,8 +131,8 @@ public class Tabuleiro {
 
 	public boolean haUmaPeca(Posicao posicao) {
 		if (!existePosicao(posicao)) {
-			throw new BoardException("Posicao fora do tabuleiro");
+			throw BoardException.FORA_DO_TABULEIRO;
 		}
-		return peca(posicao) != null;
+		return (ocupacao & (1L << casa(posicao))) != 0;
 	}
 }
@@ -0,0 +1,255 @@
+package xadrez;
+
+import tabuleiro.Tabuleiro;
+
+// Operacoes sobre bitboards de 64 bits, casa = linha * 8 + coluna (a8 = 0, h1 = 63)
+public final class Bitboards {
+
+	public static final long COLUNA_A = 0x0101010101010101L;
+	public static final long COLUNA_B = COLUNA_A << 1;
+	public static final long COLUNA_G = COLUNA_A << 6;
+	public static final long COLUNA_H = COLUNA_A << 7;
+	public static final long LINHA_8 = 0xFFL;
+	public static final long LINHA_7 = 0xFFL << 8;
+	public static final long LINHA_2 = 0xFFL << 48;
+	public static final long LINHA_1 = 0xFFL << 56;
+
+	private static final long NAO_A = ~COLUNA_A;
+	private static final long NAO_H = ~COLUNA_H;
+	private static final long NAO_AB = ~(COLUNA_A | COLUNA_B);
+	private static final long NAO_GH = ~(COLUNA_G | COLUNA_H);
+
+	// ENTRE[a][b]: casas estritamente entre a e b quando alinhadas; RETA[a][b]: linha inteira por a e b
+	private static final long[][] ENTRE = new long[64][64];
+	private static final long[][] RETA = new long[64][64];
+
+	// Ataques das pecas que nao deslizam, por casa; PEAO indexado por Cor.ordinal()
+	private static final long[] CAVALO = new long[64];
+	private static final long[] REI = new long[64];
+	private static final long[][] PEAO = new long[2][64];
+
+	// Bitboards magicos: para cada casa, as ocupacoes relevantes (mascara) multiplicadas pelo numero
+	// magico e deslocadas formam um indice sem colisoes destrutivas na tabela de ataques da casa.
+	// Os numeros foram achados por busca aleatoria de candidatos esparsos (a & b & c, xorshift64)
+	// para a numeracao a8 = 0 deste tabuleiro; preencheTabela confere cada um na carga da classe
+	private static final long[] MAGICO_TORRE = {
+			0x0980008011400020L, 0x8340004410002000L, 0x0880200090008268L, 0x0080080080100004L,
+			0x8100110004020800L, 0x0300010004000822L, 0x08801A0029000080L, 0x8100050001204882L,
+			0x0844800081400320L, 0x0804402010004000L, 0x0108802003100480L, 0x5C00808010000800L,
+			0x0003001801001014L, 0x0002000200041008L, 0x0004008108042210L, 0x0105000100009042L,
+			0x0400808000400021L, 0xC100404010002000L, 0x0060008010002088L, 0x0400808008001000L,
+			0x4440808008000400L, 0x1002008004000280L, 0x40024400300D1248L, 0x0010020000408104L,
+			0x0101008200204200L, 0x8020002040005000L, 0x4100100080802000L, 0x4008006A80100280L,
+			0x0021008500100800L, 0x5000040080800200L, 0x0010040101000200L, 0x6140004200008104L,
+			0x4000400020800090L, 0x2020002080804000L, 0x0000408202002010L, 0x0080100501000820L,
+			0x0004040080800800L, 0xA01A800200800400L, 0x0014820104009008L, 0x0008004082000401L,
+			0x0029804004608010L, 0x0140002000818048L, 0x000C410420010014L, 0x0020100008008080L,
+			0x8000080004008080L, 0x0082008004008002L, 0x1002000801020004L, 0x0010848505620004L,
+			0x0000801840002080L, 0x2002010C80403200L, 0x9000114220010300L, 0x0001000820100100L,
+			0x000A800401080080L, 0xC001400410200801L, 0x4800480102300400L, 0x1000010040840200L,
+			0x0002800442162101L, 0x4000810010204202L, 0x0400201200084082L, 0x8200210004081001L,
+			0x1002001004200802L, 0x0005000208040001L, 0x0002002701AC0822L, 0x000010250184004AL };
+	private static final long[] MAGICO_BISPO = {
+			0x4014700208012480L, 0x0220014200A10001L, 0x8108084040806120L, 0x200E0A02001A00C0L,
+			0x4442021080243000L, 0x4C00901008100050L, 0x0800821110404840L, 0x0000120222024003L,
+			0x008A08A041020200L, 0x000118460C0428A0L, 0x0000314B06020022L, 0x0804180481080025L,
+			0x0000340520004880L, 0x0440309004200008L, 0x2108084402A01000L, 0x0328024422082200L,
+			0xC21200C004310C00L, 0x460840040820C400L, 0x0010004A02720020L, 0x000800488A044044L,
+			0x0025000A9040000AL, 0x0009010600822104L, 0x0021040400821002L, 0x0801000A19010120L,
+			0x0004048210915000L, 0x0310222005242C05L, 0x00544800101C8010L, 0x2308080000820003L,
+			0x2008820004010401L, 0x0650110244208800L, 0x0009324401080802L, 0x01008022A6010C40L,
+			0x8081200804200940L, 0x300C040305200240L, 0x0002062200240800L, 0x2801400A00042200L,
+			0x14090104000202A0L, 0x05B0020080081048L, 0x0A10010910020880L, 0xC403020222060B00L,
+			0x260D301250402080L, 0x0000A80802088800L, 0x0001008041023000L, 0x0000020202016420L,
+			0x0008540502140400L, 0x0201101008400B80L, 0x0104104202000058L, 0x0002080101000031L,
+			0x4200A20120200004L, 0x0004208410090400L, 0x10A0182508088000L, 0x1814081420880800L,
+			0x1008810850340611L, 0x0081482248020610L, 0x0009080800940000L, 0x0060010240890800L,
+			0x048A920802080500L, 0x26000E9204900404L, 0x200002A080482200L, 0xAC8018422020A808L,
+			0x929A000440A50308L, 0x41801040826C0110L, 0x0140C01081010101L, 0xC0A0012206040EA0L };
+	private static final long[] MASCARA_TORRE = new long[64];
+	private static final int[] DESLOCAMENTO_TORRE = new int[64];
+	private static final long[][] ATAQUES_TORRE = new long[64][];
+	private static final long[] MASCARA_BISPO = new long[64];
+	private static final int[] DESLOCAMENTO_BISPO = new int[64];
+	private static final long[][] ATAQUES_BISPO = new long[64][];
+
+	static {
+		for (int casa = 0; casa < 64; casa++) {
+			long bit = 1L << casa;
+			CAVALO[casa] = ataquesCavalo(bit);
+			REI[casa] = ataquesRei(bit);
+			PEAO[Cor.PRETO.ordinal()][casa] = ataquesPeao(bit, Cor.PRETO);
+			PEAO[Cor.BRANCO.ordinal()][casa] = ataquesPeao(bit, Cor.BRANCO);
+
+			// As bordas so entram na mascara quando a peca esta nelas, na direcao do raio
+			long bordasLinha = (LINHA_8 | LINHA_1) & ~linhaDa(casa);
+			long bordasColuna = (COLUNA_A | COLUNA_H) & ~colunaDa(casa);
+			MASCARA_TORRE[casa] = ataquesTorre(bit, 0L) & ~(bordasLinha & colunaDa(casa))
+					& ~(bordasColuna & linhaDa(casa));
+			MASCARA_BISPO[casa] = ataquesBispo(bit, 0L) & ~(LINHA_8 | LINHA_1 | COLUNA_A | COLUNA_H);
+			ATAQUES_TORRE[casa] = preencheTabela(casa, true);
+			ATAQUES_BISPO[casa] = preencheTabela(casa, false);
+		}
+		for (int a = 0; a < 64; a++) {
+			for (int b = 0; b < 64; b++) {
+				if (a == b) {
+					continue;
+				}
+				long bitA = 1L << a;
+				long bitB = 1L << b;
+				if ((ataquesTorre(bitA, 0L) & bitB) != 0) {
+					ENTRE[a][b] = ataquesTorre(bitA, bitB) & ataquesTorre(bitB, bitA);
+					RETA[a][b] = (ataquesTorre(bitA, 0L) & ataquesTorre(bitB, 0L)) | bitA | bitB;
+				} else if ((ataquesBispo(bitA, 0L) & bitB) != 0) {
+					ENTRE[a][b] = ataquesBispo(bitA, bitB) & ataquesBispo(bitB, bitA);
+					RETA[a][b] = (ataquesBispo(bitA, 0L) & ataquesBispo(bitB, 0L)) | bitA | bitB;
+				}
+			}
+		}
+	}
+
+	private Bitboards() {
+	}
+
+	public static int indice(TipoPeca tipo, Cor cor) {
+		return cor.ordinal() * 6 + tipo.ordinal();
+	}
+
+	// Ataques de uma unica peca na casa, por consulta a tabela
+	public static long cavalo(int casa) {
+		return CAVALO[casa];
+	}
+
+	public static long rei(int casa) {
+		return REI[casa];
+	}
+
+	public static long peao(int casa, Cor cor) {
+		return PEAO[cor.ordinal()][casa];
+	}
+
+	public static long torre(int casa, long ocupacao) {
+		return ATAQUES_TORRE[casa][(int) (((ocupacao & MASCARA_TORRE[casa]) * MAGICO_TORRE[casa]) >>> DESLOCAMENTO_TORRE[casa])];
+	}
+
+	public static long bispo(int casa, long ocupacao) {
+		return ATAQUES_BISPO[casa][(int) (((ocupacao & MASCARA_BISPO[casa]) * MAGICO_BISPO[casa]) >>> DESLOCAMENTO_BISPO[casa])];
+	}
+
+	public static long rainha(int casa, long ocupacao) {
+		return torre(casa, ocupacao) | bispo(casa, ocupacao);
+	}
+
+	public static long entre(int a, int b) {
+		return ENTRE[a][b];
+	}
+
+	public static long reta(int a, int b) {
+		return RETA[a][b];
+	}
+
+	public static long pecas(Tabuleiro tabuleiro, TipoPeca tipo, Cor cor) {
+		return tabuleiro.getBitboard(indice(tipo, cor));
+	}
+
+	public static long ocupacao(Tabuleiro tabuleiro, Cor cor) {
+		int base = cor.ordinal() * 6;
+		return tabuleiro.getBitboard(base) | tabuleiro.getBitboard(base + 1) | tabuleiro.getBitboard(base + 2)
+				| tabuleiro.getBitboard(base + 3) | tabuleiro.getBitboard(base + 4) | tabuleiro.getBitboard(base + 5);
+	}
+
+	public static long ataquesPeao(long peoes, Cor cor) {
+		if (cor == Cor.BRANCO) {
+			return ((peoes & NAO_A) >>> 9) | ((peoes & NAO_H) >>> 7);
+		}
+		return ((peoes & NAO_H) << 9) | ((peoes & NAO_A) << 7);
+	}
+
+	public static long ataquesCavalo(long cavalos) {
+		return ((cavalos & NAO_A) >>> 17) | ((cavalos & NAO_H) >>> 15) | ((cavalos & NAO_AB) >>> 10)
+				| ((cavalos & NAO_GH) >>> 6) | ((cavalos & NAO_H) << 17) | ((cavalos & NAO_A) << 15)
+				| ((cavalos & NAO_GH) << 10) | ((cavalos & NAO_AB) << 6);
+	}
+
+	public static long ataquesRei(long reis) {
+		long lados = ((reis & NAO_A) >>> 1) | ((reis & NAO_H) << 1);
+		long linha = reis | lados;
+		return lados | (linha >>> 8) | (linha << 8);
+	}
+
+	public static long ataquesTorre(long torres, long ocupacao) {
+		long vazio = ~ocupacao;
+		return raio(torres, vazio, -8, -1L) | raio(torres, vazio, 8, -1L) | raio(torres, vazio, 1, NAO_A)
+				| raio(torres, vazio, -1, NAO_H);
+	}
+
+	public static long ataquesBispo(long bispos, long ocupacao) {
+		long vazio = ~ocupacao;
+		return raio(bispos, vazio, -7, NAO_A) | raio(bispos, vazio, -9, NAO_H) | raio(bispos, vazio, 9, NAO_A)
+				| raio(bispos, vazio, 7, NAO_H);
+	}
+
+	public static long ataquesRainha(long rainhas, long ocupacao) {
+		return ataquesTorre(rainhas, ocupacao) | ataquesBispo(rainhas, ocupacao);
+	}
+
+	// Todas as casas atacadas pelas pecas da cor
+	public static long ataques(Tabuleiro tabuleiro, Cor cor) {
+		long ocupacao = tabuleiro.getOcupacao();
+		long rainhas = pecas(tabuleiro, TipoPeca.RAINHA, cor);
+		return ataquesPeao(pecas(tabuleiro, TipoPeca.PEAO, cor), cor)
+				| ataquesCavalo(pecas(tabuleiro, TipoPeca.CAVALO, cor))
+				| ataquesBispo(pecas(tabuleiro, TipoPeca.BISPO, cor) | rainhas, ocupacao)
+				| ataquesTorre(pecas(tabuleiro, TipoPeca.TORRE, cor) | rainhas, ocupacao)
+				| ataquesRei(pecas(tabuleiro, TipoPeca.REI, cor));
+	}
+
+	// Ataques de cada subconjunto da mascara no indice dado pelo numero magico; os de referencia
+	// vem do preenchimento Kogge-Stone. Uma colisao com ataques diferentes indica numero errado
+	private static long[] preencheTabela(int casa, boolean eTorre) {
+		long mascara = eTorre ? MASCARA_TORRE[casa] : MASCARA_BISPO[casa];
+		long magico = eTorre ? MAGICO_TORRE[casa] : MAGICO_BISPO[casa];
+		int bits = Long.bitCount(mascara);
+		long[] tabela = new long[1 << bits];
+		long subconjunto = 0L;
+		do {
+			long ataques = eTorre ? ataquesTorre(1L << casa, subconjunto) : ataquesBispo(1L << casa, subconjunto);
+			int indice = (int) ((subconjunto * magico) >>> (64 - bits));
+			if (tabela[indice] != 0L && tabela[indice] != ataques) {
+				throw new IllegalStateException("Numero magico invalido na casa " + casa);
+			}
+			tabela[indice] = ataques;
+			subconjunto = (subconjunto - mascara) & mascara;
+		} while (subconjunto != 0L);
+		if (eTorre) {
+			DESLOCAMENTO_TORRE[casa] = 64 - bits;
+		} else {
+			DESLOCAMENTO_BISPO[casa] = 64 - bits;
+		}
+		return tabela;
+	}
+
+	private static long linhaDa(int casa) {
+		return LINHA_8 << (casa & ~7);
+	}
+
+	private static long colunaDa(int casa) {
+		return COLUNA_A << (casa & 7);
+	}
+
+	// Preenchimento Kogge-Stone: propaga as pecas pelas casas vazias na direcao d
+	private static long raio(long pecas, long vazio, int d, long mascara) {
+		vazio &= mascara;
+		pecas |= vazio & desloca(pecas, d);
+		vazio &= desloca(vazio, d);
+		pecas |= vazio & desloca(pecas, 2 * d);
+		vazio &= desloca(vazio, 2 * d);
+		pecas |= vazio & desloca(pecas, 4 * d);
+		return desloca(pecas, d) & mascara;
+	}
+
+	private static long desloca(long b, int d) {
+		return d > 0 ? b << d : b >>> -d;
+	}
+
+}
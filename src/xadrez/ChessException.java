@@ -10,4 +10,8 @@ public class ChessException extends BoardException {
 		super(msg);
 	}
 
+	ChessException(String msg, boolean pilha) {
+		super(msg, pilha);
+	}
+
 }
@@ -0,0 +1,137 @@
+package xadrez;
+
+import tabuleiro.Tabuleiro;
+
+// Fotografia imutavel de uma posicao: oito bitboards e alguns inteiros pequenos, sem nenhuma
+// referencia a pecas ou ao tabuleiro, entao pode ser compartilhada livremente entre threads.
+// Obtida por PartidaXadrez.getEstado() e aplicada por restauraEstado; nao inclui a pilha de desfazer
+public final class EstadoPartida {
+
+	private final long brancas;
+	private final long pretas;
+	// Por tipo, sem separar as cores
+	private final long peoes;
+	private final long cavalos;
+	private final long bispos;
+	private final long torres;
+	private final long rainhas;
+	private final long reis;
+	private final long chave;
+	private final int turno;
+	private final short relogioMeiosLances;
+	private final byte direitosRoque;
+	private final byte casaEnPassant;
+	private final byte situacao;
+
+	EstadoPartida(Tabuleiro tabuleiro, long chave, int turno, int relogioMeiosLances, int direitosRoque,
+			int casaEnPassant, boolean xeque, boolean xequeMate) {
+		peoes = doTipo(tabuleiro, TipoPeca.PEAO);
+		cavalos = doTipo(tabuleiro, TipoPeca.CAVALO);
+		bispos = doTipo(tabuleiro, TipoPeca.BISPO);
+		torres = doTipo(tabuleiro, TipoPeca.TORRE);
+		rainhas = doTipo(tabuleiro, TipoPeca.RAINHA);
+		reis = doTipo(tabuleiro, TipoPeca.REI);
+		this.brancas = Bitboards.ocupacao(tabuleiro, Cor.BRANCO);
+		this.pretas = Bitboards.ocupacao(tabuleiro, Cor.PRETO);
+		this.chave = chave;
+		this.turno = turno;
+		this.relogioMeiosLances = (short) relogioMeiosLances;
+		this.direitosRoque = (byte) direitosRoque;
+		this.casaEnPassant = (byte) casaEnPassant;
+		this.situacao = (byte) ((xeque ? 1 : 0) | (xequeMate ? 2 : 0));
+	}
+
+	private static long doTipo(Tabuleiro tabuleiro, TipoPeca tipo) {
+		return Bitboards.pecas(tabuleiro, tipo, Cor.BRANCO) | Bitboards.pecas(tabuleiro, tipo, Cor.PRETO);
+	}
+
+	public long getPecas(TipoPeca tipo, Cor cor) {
+		return getPecas(tipo) & (cor == Cor.BRANCO ? brancas : pretas);
+	}
+
+	public long getPecas(TipoPeca tipo) {
+		switch (tipo) {
+		case PEAO:
+			return peoes;
+		case CAVALO:
+			return cavalos;
+		case BISPO:
+			return bispos;
+		case TORRE:
+			return torres;
+		case RAINHA:
+			return rainhas;
+		default:
+			return reis;
+		}
+	}
+
+	public long getOcupacao() {
+		return brancas | pretas;
+	}
+
+	public long getChave() {
+		return chave;
+	}
+
+	// Jogador com a vez; depois do xeque-mate, o vencedor. Mesma convencao de PartidaXadrez
+	public Cor getJogadorAtual() {
+		Cor vez = getVez();
+		return !getXequeMate() ? vez : vez == Cor.BRANCO ? Cor.PRETO : Cor.BRANCO;
+	}
+
+	// Lado a jogar na posicao, mesmo depois do xeque-mate, quando e o que levou o mate
+	public Cor getVez() {
+		return (turno & 1) == 1 ? Cor.BRANCO : Cor.PRETO;
+	}
+
+	int getTurno() {
+		return turno;
+	}
+
+	public int getRelogioMeiosLances() {
+		return relogioMeiosLances;
+	}
+
+	// Mascara KQkq: 1 = K, 2 = Q, 4 = k, 8 = q
+	public int getDireitosRoque() {
+		return direitosRoque;
+	}
+
+	// Casa do peao vulneravel ao en passant, ou -1
+	public int getCasaEnPassant() {
+		return casaEnPassant;
+	}
+
+	public boolean getXeque() {
+		return (situacao & 1) != 0;
+	}
+
+	public boolean getXequeMate() {
+		return (situacao & 2) != 0;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof EstadoPartida)) {
+			return false;
+		}
+		EstadoPartida outro = (EstadoPartida) obj;
+		if (chave != outro.chave || brancas != outro.brancas || pretas != outro.pretas
+				|| direitosRoque != outro.direitosRoque || casaEnPassant != outro.casaEnPassant
+				|| getVez() != outro.getVez()) {
+			return false;
+		}
+		return peoes == outro.peoes && cavalos == outro.cavalos && bispos == outro.bispos && torres == outro.torres
+				&& rainhas == outro.rainhas && reis == outro.reis;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(chave);
+	}
+
+}
@@ -0,0 +1,85 @@
+package xadrez;
+
+// Movimento codificado em um int: origem (bits 0-5), destino (bits 6-11) e tipo (bits 12-15)
+public final class Movimento {
+
+	public static final int NORMAL = 0;
+	public static final int PEAO_DUPLO = 1;
+	public static final int ROQUE = 2;
+	public static final int EN_PASSANT = 3;
+	public static final int PROMOCAO_CAVALO = 4;
+	public static final int PROMOCAO_BISPO = 5;
+	public static final int PROMOCAO_TORRE = 6;
+	public static final int PROMOCAO_RAINHA = 7;
+
+	public static final int MAXIMO_POR_PECA = 32;
+	public static final int MAXIMO_POR_POSICAO = 256;
+
+	private static final TipoPeca[] PROMOCOES = { TipoPeca.CAVALO, TipoPeca.BISPO, TipoPeca.TORRE, TipoPeca.RAINHA };
+
+	private Movimento() {
+	}
+
+	public static int codifica(int origem, int destino) {
+		return origem | destino << 6;
+	}
+
+	public static int codifica(int origem, int destino, int tipo) {
+		return origem | destino << 6 | tipo << 12;
+	}
+
+	public static int origem(int movimento) {
+		return movimento & 0x3F;
+	}
+
+	public static int destino(int movimento) {
+		return (movimento >>> 6) & 0x3F;
+	}
+
+	public static int tipo(int movimento) {
+		return (movimento >>> 12) & 0xF;
+	}
+
+	public static boolean ePromocao(int movimento) {
+		return tipo(movimento) >= PROMOCAO_CAVALO;
+	}
+
+	public static TipoPeca promocao(int movimento) {
+		return PROMOCOES[tipo(movimento) - PROMOCAO_CAVALO];
+	}
+
+	// Notacao de coordenadas, por exemplo e2e4 ou e7e8q
+	public static String toString(int movimento) {
+		String s = PosicaoXadrez.nome(origem(movimento)) + PosicaoXadrez.nome(destino(movimento));
+		if (ePromocao(movimento)) {
+			s += "nbrq".charAt(tipo(movimento) - PROMOCAO_CAVALO);
+		}
+		return s;
+	}
+
+	// Le a notacao de coordenadas sem lancar excecao: retorna origem e destino codificados, com o
+	// tipo de promocao se houver a quinta letra, ou -1 se o texto nao for um movimento
+	public static int deTexto(CharSequence texto) {
+		if (texto.length() != 4 && texto.length() != 5) {
+			return -1;
+		}
+		int origem = casa(texto.charAt(0), texto.charAt(1));
+		int destino = casa(texto.charAt(2), texto.charAt(3));
+		if (origem < 0 || destino < 0) {
+			return -1;
+		}
+		if (texto.length() == 4) {
+			return codifica(origem, destino);
+		}
+		int promocao = "nbrq".indexOf(Character.toLowerCase(texto.charAt(4)));
+		return promocao < 0 ? -1 : codifica(origem, destino, PROMOCAO_CAVALO + promocao);
+	}
+
+	private static int casa(char coluna, char linha) {
+		if (coluna < 'a' || coluna > 'h' || linha < '1' || linha > '8') {
+			return -1;
+		}
+		return (8 - (linha - '0')) * 8 + (coluna - 'a');
+	}
+
+}
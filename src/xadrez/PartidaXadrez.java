@@ -1,11 +1,8 @@
 package xadrez;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Arrays;
 
 import tabuleiro.Peca;
-import tabuleiro.Posicao;
 import tabuleiro.Tabuleiro;
 import xadrez.pecas.Bispo;
 import xadrez.pecas.Cavalo;
@@ -16,6 +13,10 @@ import xadrez.pecas.Torre;
 
 public class PartidaXadrez {
 
+	private static final int TAMANHO_PILHA = 256;
+	private static final String LETRAS_FEN = "pnbrqk";
+	private static final TipoPeca[] TIPOS = TipoPeca.values();
+
 	private int turno;
 	private Cor jogadorAtual;
 	private Tabuleiro tabuleiro;
@@ -23,22 +24,148 @@ public class PartidaXadrez {
 	private boolean xequeMate;
 	private PecaXadrez enPassantVuneravel;
 	private PecaXadrez promovido;
+	private long chave;
+	// Material e peca-casa (TabelasPosicionais) das brancas menos as pretas, e a fase do jogo
+	private int meioJogo;
+	private int finalJogo;
+	private int fase;
+	private int relogioMeiosLances;
+
+	// Pecas no tabuleiro por cor (indice Cor.ordinal()), removidas em O(1) trocando com a ultima
+	private PecaXadrez[][] pecasPorCor = new PecaXadrez[2][64];
+	private int[] quantidadePecas = new int[2];
+	private int[] casaRei = { -1, -1 };
 
-	private List<Peca> pecasNoTabuleiro = new ArrayList<>();
-	private List<Peca> pecasCapturadas = new ArrayList<>();
+	// Pilha de desfazer de makeMove/unmakeMove, preallocada e indexada por alturaPilha
+	private int alturaPilha;
+	private int[] pilhaMovimentos = new int[TAMANHO_PILHA];
+	private PecaXadrez[] pilhaPecas = new PecaXadrez[TAMANHO_PILHA];
+	private PecaXadrez[] pilhaCapturadas = new PecaXadrez[TAMANHO_PILHA];
+	private PecaXadrez[] pilhaEnPassant = new PecaXadrez[TAMANHO_PILHA];
+	private byte[] pilhaEstado = new byte[TAMANHO_PILHA];
+	private long[] pilhaChaves = new long[TAMANHO_PILHA];
+	private int[] pilhaRelogio = new int[TAMANHO_PILHA];
+
+	// Movimentos legais da posicao atual, validos enquanto versaoMovimentos == versao. A versao muda
+	// a cada peca colocada ou retirada, entao movimentosPossiveis, a validacao do lance e o teste de
+	// xeque-mate depois dele geram a lista uma vez so por posicao
+	private int[] movimentos = new int[Movimento.MAXIMO_POR_POSICAO];
+	private int quantidadeMovimentos;
+	private long versao;
+	private long versaoMovimentos = -1;
+	private long acertosMovimentos;
+	private long falhasMovimentos;
+	private int[] movimentosPeca = new int[Movimento.MAXIMO_POR_PECA];
 
 	public PartidaXadrez() {
 		tabuleiro = new Tabuleiro(8, 8);
 		turno = 1;
 		jogadorAtual = Cor.BRANCO;
 		setupInicial();
+		chave = calculaChave();
+	}
+
+	// Partida a partir de uma posicao FEN; os direitos de roque viram a contagem de movimentos
+	// do rei e das torres e a casa en passant aponta o peao vulneravel
+	public PartidaXadrez(CharSequence fen) {
+		tabuleiro = new Tabuleiro(8, 8);
+		carregaFen(fen);
+		chave = calculaChave();
+		xeque = testaXeque(jogadorAtual);
+		xequeMate = testaXequeMate(jogadorAtual);
+	}
+
+	public PartidaXadrez(EstadoPartida estado) {
+		tabuleiro = new Tabuleiro(8, 8);
+		restauraEstado(estado);
+	}
+
+	// Volta a posicao inicial reaproveitando a partida, o tabuleiro e a pilha de desfazer
+	public void reinicia() {
+		limpa();
+		setupInicial();
+		chave = calculaChave();
+	}
+
+	public void reinicia(CharSequence fen) {
+		limpa();
+		carregaFen(fen);
+		chave = calculaChave();
+		xeque = testaXeque(jogadorAtual);
+		xequeMate = testaXequeMate(jogadorAtual);
+	}
+
+	public EstadoPartida getEstado() {
+		int casaEnPassant = enPassantVuneravel == null ? -1 : enPassantVuneravel.getCasa();
+		return new EstadoPartida(tabuleiro, chave, turno, relogioMeiosLances, direitosRoque(), casaEnPassant, xeque,
+				xequeMate);
+	}
+
+	// Coloca a partida na posicao da fotografia reaproveitando o tabuleiro e a pilha; as pecas sao
+	// recriadas a partir dos bitboards e o historico anterior e descartado
+	public void restauraEstado(EstadoPartida estado) {
+		limpa();
+		for (Cor cor : Cor.values()) {
+			for (TipoPeca tipo : TIPOS) {
+				long pecas = estado.getPecas(tipo, cor);
+				while (pecas != 0) {
+					int casa = Long.numberOfTrailingZeros(pecas);
+					PecaXadrez peca = novaPeca(tipo, cor, casa);
+					colocaPeca(peca, casa);
+					adicionaNaLista(peca);
+					pecas &= pecas - 1;
+				}
+			}
+		}
+		marcaMovidas(estado.getDireitosRoque());
+		turno = estado.getTurno();
+		jogadorAtual = estado.getVez();
+		relogioMeiosLances = estado.getRelogioMeiosLances();
+		enPassantVuneravel = estado.getCasaEnPassant() < 0 ? null : getPeca(estado.getCasaEnPassant());
+		xeque = estado.getXeque();
+		xequeMate = estado.getXequeMate();
+		chave = estado.getChave();
 	}
 
+	private void limpa() {
+		for (int cor = 0; cor < 2; cor++) {
+			for (int i = 0; i < quantidadePecas[cor]; i++) {
+				tabuleiro.removePeca(pecasPorCor[cor][i].getCasa());
+				pecasPorCor[cor][i] = null;
+			}
+			quantidadePecas[cor] = 0;
+			casaRei[cor] = -1;
+		}
+		Arrays.fill(pilhaPecas, 0, alturaPilha, null);
+		Arrays.fill(pilhaCapturadas, 0, alturaPilha, null);
+		Arrays.fill(pilhaEnPassant, 0, alturaPilha, null);
+		alturaPilha = 0;
+		turno = 1;
+		jogadorAtual = Cor.BRANCO;
+		xeque = false;
+		xequeMate = false;
+		enPassantVuneravel = null;
+		promovido = null;
+		relogioMeiosLances = 0;
+		chave = 0L;
+		meioJogo = 0;
+		finalJogo = 0;
+		fase = 0;
+		versao++;
+	}
+
+	// Depois do xeque-mate o turno nao avanca e o jogador atual e o vencedor
 	public int getTurno() {
-		return turno;
+		return xequeMate ? turno - 1 : turno;
 	}
 
+	// Jogador com a vez; depois do xeque-mate, o vencedor. Mesma convencao de EstadoPartida
 	public Cor getJogadorAtual() {
+		return xequeMate ? oponente(jogadorAtual) : jogadorAtual;
+	}
+
+	// Lado a jogar na posicao, mesmo depois do xeque-mate, quando e o que levou o mate
+	public Cor getVez() {
 		return jogadorAtual;
 	}
 
@@ -50,6 +177,11 @@ public class PartidaXadrez {
 		return xequeMate;
 	}
 
+	// makeMove nao testa o mate; depois de uma sequencia de makeMove, poe o xeque-mate da posicao em dia
+	public void atualizaXequeMate() {
+		xequeMate = testaXequeMate(jogadorAtual);
+	}
+
 	public PecaXadrez getEnPassantVuneravel() {
 		return enPassantVuneravel;
 	}
@@ -58,6 +190,81 @@ public class PartidaXadrez {
 		return promovido;
 	}
 
+	// Meios-lances desde a ultima captura ou movimento de peao
+	public int getRelogioMeiosLances() {
+		return relogioMeiosLances;
+	}
+
+	// Hash Zobrist da posicao: pecas, jogador atual, direitos de roque e, se a captura en passant
+	// for possivel, a coluna en passant
+	public long getChave() {
+		return chave;
+	}
+
+	// Mascara KQkq como em direitosRoque: 1 = K, 2 = Q, 4 = k, 8 = q
+	public int getDireitosRoque() {
+		return direitosRoque();
+	}
+
+	// Avaliacao das brancas menos a das pretas, em centipeoes, interpolada entre meio-jogo e final
+	// pela fase; mantida a cada movimento, custa so algumas operacoes
+	public int getAvaliacao() {
+		int f = Math.min(fase, TabelasPosicionais.FASE_TOTAL);
+		return (meioJogo * f + finalJogo * (TabelasPosicionais.FASE_TOTAL - f)) / TabelasPosicionais.FASE_TOTAL;
+	}
+
+	public int getAvaliacaoMeioJogo() {
+		return meioJogo;
+	}
+
+	public int getAvaliacaoFinal() {
+		return finalJogo;
+	}
+
+	// De 0 (so reis e peoes) a TabelasPosicionais.FASE_TOTAL (todas as pecas), podendo passar com promocoes
+	public int getFase() {
+		return fase;
+	}
+
+	// Consultas a lista de movimentos legais da posicao atual atendidas sem gerar de novo
+	public long getAcertosCacheMovimentos() {
+		return acertosMovimentos;
+	}
+
+	public long getFalhasCacheMovimentos() {
+		return falhasMovimentos;
+	}
+
+	// Copia os movimentos aplicados desde a posicao de partida (construtor, reinicia ou
+	// restauraEstado), do primeiro ao ultimo, e devolve quantos sao; so cabem movimentos.length
+	public int getHistorico(int[] movimentos) {
+		System.arraycopy(pilhaMovimentos, 0, movimentos, 0, Math.min(alturaPilha, movimentos.length));
+		return alturaPilha;
+	}
+
+	public PecaXadrez getPeca(int casa) {
+		return (PecaXadrez) tabuleiro.pecaNaCasa(casa);
+	}
+
+	public long getOcupacao() {
+		return tabuleiro.getOcupacao();
+	}
+
+	public long getBitboard(TipoPeca tipo, Cor cor) {
+		return Bitboards.pecas(tabuleiro, tipo, cor);
+	}
+
+	// A posicao atual ja ocorreu com o mesmo jogador desde a ultima captura ou movimento de peao
+	public boolean repeticao() {
+		int limite = Math.max(alturaPilha - relogioMeiosLances, 0);
+		for (int i = alturaPilha - 2; i >= limite; i -= 2) {
+			if (pilhaChaves[i] == chave) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public PecaXadrez[][] getPecas() {
 		PecaXadrez[][] mat = new PecaXadrez[tabuleiro.getLinhas()][tabuleiro.getColunas()];
 		for (int i = 0; i < tabuleiro.getLinhas(); i++) {
@@ -70,51 +277,136 @@ public class PartidaXadrez {
 	}
 
 	public boolean[][] movimentosPossiveis(PosicaoXadrez fontePosicao) {
-		Posicao posicao = fontePosicao.toPosicao();
-		validaPosicaoFonte(posicao);
-		return tabuleiro.peca(posicao).movimentosPossiveis();
+		int origem = fontePosicao.getCasa();
+		int codigo = validaOrigem(origem);
+		if (codigo != ResultadoMovimento.OK) {
+			throw ResultadoMovimento.excecao(codigo);
+		}
+		boolean[][] mat = new boolean[tabuleiro.getLinhas()][tabuleiro.getColunas()];
+		int n = movimentosLegais();
+		for (int i = 0; i < n; i++) {
+			if (Movimento.origem(movimentos[i]) == origem) {
+				int destino = Movimento.destino(movimentos[i]);
+				mat[destino / tabuleiro.getColunas()][destino % tabuleiro.getColunas()] = true;
+			}
+		}
+		return mat;
 	}
 
 	public PecaXadrez performMovimentoXadrez(PosicaoXadrez fontePosicao, PosicaoXadrez destinoPosicao) {
-		Posicao fonte = fontePosicao.toPosicao();
-		Posicao destino = destinoPosicao.toPosicao();
-		validaPosicaoFonte(fonte);
-		validaPosicaoDestino(fonte, destino);
-		Peca capturaPeca = realizaMovimento(fonte, destino);
+		int movimento = procuraMovimento(fontePosicao.getCasa(),
+				destinoPosicao.getCasa());
+		if (movimento < 0) {
+			throw ResultadoMovimento.excecao(-movimento);
+		}
+		aplicaMovimento(movimento);
+		return pilhaCapturadas[alturaPilha - 1];
+	}
+
+	// Mesmas regras de performMovimentoXadrez sem excecoes: retorna ResultadoMovimento.OK se o
+	// movimento foi feito ou o codigo do motivo da recusa, e a partida fica como estava
+	public int tentaMovimento(int origem, int destino) {
+		int movimento = procuraMovimento(origem, destino);
+		if (movimento < 0) {
+			return -movimento;
+		}
+		aplicaMovimento(movimento);
+		return ResultadoMovimento.OK;
+	}
+
+	public int tentaMovimentoXadrez(PosicaoXadrez fontePosicao, PosicaoXadrez destinoPosicao) {
+		return tentaMovimento(fontePosicao.getCasa(), destinoPosicao.getCasa());
+	}
 
-		if (testaXeque(jogadorAtual)) {
-			desfazMovimento(fonte, destino, capturaPeca);
-			throw new ChessException("Voce nao pode se colocar em xeque");
+	// Se o movimento codificado, com o tipo, e legal na posicao atual; usa o cache dos movimentos legais
+	public boolean eLegal(int movimento) {
+		int n = movimentosLegais();
+		for (int i = 0; i < n; i++) {
+			if (movimentos[i] == movimento) {
+				return true;
+			}
 		}
+		return false;
+	}
 
-		PecaXadrez pecaMovida = (PecaXadrez) tabuleiro.peca(destino);
+	// So valida, sem mover: ResultadoMovimento.OK ou o codigo do motivo
+	public int validaMovimento(int origem, int destino) {
+		int movimento = procuraMovimento(origem, destino);
+		return movimento < 0 ? -movimento : ResultadoMovimento.OK;
+	}
+
+	private void aplicaMovimento(int movimento) {
+		makeMove(movimento);
 
 		// #MovimentoEspecial promoo
 		promovido = null;
-		if (pecaMovida instanceof Peao) {
-			if (pecaMovida.getCor() == Cor.BRANCO && destino.getLinha() == 0
-					|| pecaMovida.getCor() == Cor.PRETO && destino.getLinha() == 7) {
-				promovido = (PecaXadrez) tabuleiro.peca(destino);
-				promovido = recolocaPecaPromovida("Q");
-			}
+		if (Movimento.ePromocao(movimento)) {
+			promovido = (PecaXadrez) tabuleiro.pecaNaCasa(Movimento.destino(movimento));
 		}
 
-		xeque = (testaXeque(oponente(jogadorAtual))) ? true : false;
+		xequeMate = testaXequeMate(jogadorAtual);
+	}
 
-		if (testaXequeMate(oponente(jogadorAtual))) {
-			xequeMate = true;
-		} else {
-			proximoTurno();
+	// Movimento legal de origem a destino (a promocao e sempre para rainha), ou o codigo de
+	// ResultadoMovimento com sinal trocado; os codigos seguem a ordem das validacoes da API antiga
+	private int procuraMovimento(int origem, int destino) {
+		int codigo = validaPeca(origem);
+		if (codigo != ResultadoMovimento.OK) {
+			return -codigo;
+		}
+		if (destino < 0 || destino >= 64) {
+			return -ResultadoMovimento.FORA_DO_TABULEIRO;
+		}
+		int n = movimentosLegais();
+		boolean temMovimento = false;
+		for (int i = 0; i < n; i++) {
+			if (Movimento.origem(movimentos[i]) == origem) {
+				if (Movimento.destino(movimentos[i]) == destino) {
+					return movimentos[i];
+				}
+				temMovimento = true;
+			}
+		}
+		if (!temMovimento) {
+			return -ResultadoMovimento.SEM_MOVIMENTOS;
+		}
+		// Movimento da peca que so e recusado por deixar o proprio rei em xeque
+		PecaXadrez peca = (PecaXadrez) tabuleiro.pecaNaCasa(origem);
+		n = peca.geraMovimentos(movimentosPeca, 0);
+		for (int i = 0; i < n; i++) {
+			if (Movimento.destino(movimentosPeca[i]) == destino) {
+				return -ResultadoMovimento.XEQUE_PROPRIO;
+			}
 		}
+		return -ResultadoMovimento.DESTINO_INVALIDO;
+	}
 
-		// #MovimentoEpecial en Passant
-		if (pecaMovida instanceof Peao && (destino.getLinha() == fonte.getLinha() - 2)
-				|| (destino.getLinha() == fonte.getLinha() + 2)) {
-			enPassantVuneravel = pecaMovida;
-		} else {
-			enPassantVuneravel = null;
+	private int validaOrigem(int origem) {
+		int codigo = validaPeca(origem);
+		if (codigo != ResultadoMovimento.OK) {
+			return codigo;
+		}
+		int n = movimentosLegais();
+		for (int i = 0; i < n; i++) {
+			if (Movimento.origem(movimentos[i]) == origem) {
+				return ResultadoMovimento.OK;
+			}
 		}
-		return (PecaXadrez) capturaPeca;
+		return ResultadoMovimento.SEM_MOVIMENTOS;
+	}
+
+	private int validaPeca(int origem) {
+		if (origem < 0 || origem >= 64) {
+			return ResultadoMovimento.FORA_DO_TABULEIRO;
+		}
+		PecaXadrez peca = (PecaXadrez) tabuleiro.pecaNaCasa(origem);
+		if (peca == null) {
+			return ResultadoMovimento.SEM_PECA_NA_ORIGEM;
+		}
+		if (peca.getCor() != jogadorAtual) {
+			return ResultadoMovimento.PECA_DO_OPONENTE;
+		}
+		return ResultadoMovimento.OK;
 	}
 
 	public PecaXadrez recolocaPecaPromovida(String tipo) {
@@ -125,14 +417,21 @@ public class PartidaXadrez {
 			return promovido;
 		}
 
-		Posicao pos = promovido.getPosicaoXadrez().toPosicao();
-		Peca p = tabuleiro.removePeca(pos);
-		pecasNoTabuleiro.remove(p);
+		int casa = promovido.getCasa();
+		PecaXadrez p = retiraPeca(casa);
+		removeDaLista(p);
 
 		PecaXadrez novaPeca = novaPeca(tipo, promovido.getCor());
-		tabuleiro.coloquePeca(novaPeca, pos);
-		pecasNoTabuleiro.add(novaPeca);
+		colocaPeca(novaPeca, casa);
+		adicionaNaLista(novaPeca);
+		promovido = novaPeca;
+		// O historico (arquivo de partidas, repeticoes) precisa registrar a peca escolhida
+		int movimento = pilhaMovimentos[alturaPilha - 1];
+		pilhaMovimentos[alturaPilha - 1] = Movimento.codifica(Movimento.origem(movimento), Movimento.destino(movimento),
+				Movimento.PROMOCAO_CAVALO + "CBTQ".indexOf(tipo));
 
+		xeque = testaXeque(jogadorAtual);
+		xequeMate = testaXequeMate(jogadorAtual);
 		return novaPeca;
 	}
 
@@ -146,113 +445,358 @@ public class PartidaXadrez {
 		return new Rainha(tabuleiro, cor);
 	}
 
-	private Peca realizaMovimento(Posicao origem, Posicao destino) {
-		PecaXadrez p = (PecaXadrez) tabuleiro.removePeca(origem);
-		p.aumentaContagemMovimento();
-		Peca pecaCapturada = tabuleiro.removePeca(destino);
-		tabuleiro.coloquePeca(p, destino);
+	private PecaXadrez novaPeca(TipoPeca tipo, Cor cor) {
+		if (tipo == TipoPeca.BISPO)
+			return new Bispo(tabuleiro, cor);
+		if (tipo == TipoPeca.CAVALO)
+			return new Cavalo(tabuleiro, cor);
+		if (tipo == TipoPeca.TORRE)
+			return new Torre(tabuleiro, cor);
+		return new Rainha(tabuleiro, cor);
+	}
+
+	// Movimentos pseudo-legais do jogador atual, sem verificar se o proprio rei fica em xeque
+	public int geraMovimentos(int[] movimentos) {
+		int n = 0;
+		PecaXadrez[] pecas = pecasPorCor[jogadorAtual.ordinal()];
+		for (int i = 0; i < quantidadePecas[jogadorAtual.ordinal()]; i++) {
+			n = pecas[i].geraMovimentos(movimentos, n);
+		}
+		return n;
+	}
 
+	// Aplica um movimento gerado para o jogador atual, sem validacao; desfeito por unmakeMove
+	public void makeMove(int movimento) {
+		int origem = Movimento.origem(movimento);
+		int destino = Movimento.destino(movimento);
+		int tipo = Movimento.tipo(movimento);
+		long chaveAnterior = chave;
+		int direitosAnteriores = direitosRoque();
+		chave ^= chaveEnPassant();
+
+		PecaXadrez p = retiraPeca(origem);
+		PecaXadrez pecaCapturada;
+		if (tipo == Movimento.EN_PASSANT) {
+			pecaCapturada = retiraPeca(casaEnPassant(p, destino));
+		} else {
+			pecaCapturada = retiraPeca(destino);
+		}
 		if (pecaCapturada != null) {
-			pecasNoTabuleiro.remove(pecaCapturada);
-			pecasCapturadas.add(pecaCapturada);
+			removeDaLista(pecaCapturada);
 		}
 
-		// #MovimentoEspecial Roque do lado do rei
-		if (p instanceof Rei && destino.getColuna() == origem.getColuna() + 2) {
-			Posicao origemT = new Posicao(origem.getLinha(), origem.getColuna() + 3);
-			Posicao destinoT = new Posicao(origem.getLinha(), origem.getColuna() + 1);
-			PecaXadrez torre = (PecaXadrez) tabuleiro.removePeca(origemT);
-			tabuleiro.coloquePeca(torre, destinoT);
-			torre.aumentaContagemMovimento();
+		p.aumentaContagemMovimento();
+		if (Movimento.ePromocao(movimento)) {
+			PecaXadrez novaPeca = novaPeca(Movimento.promocao(movimento), p.getCor());
+			removeDaLista(p);
+			colocaPeca(novaPeca, destino);
+			adicionaNaLista(novaPeca);
+		} else {
+			colocaPeca(p, destino);
 		}
 
-		// #MovimentoEspecial Roque do lado da Rainh
-		if (p instanceof Rei && destino.getColuna() == origem.getColuna() - 2) {
-			Posicao origemT = new Posicao(origem.getLinha(), origem.getColuna() - 4);
-			Posicao destinoT = new Posicao(origem.getLinha(), origem.getColuna() - 1);
-			PecaXadrez torre = (PecaXadrez) tabuleiro.removePeca(origemT);
-			tabuleiro.coloquePeca(torre, destinoT);
+		// #MovimentoEspecial Roque
+		if (tipo == Movimento.ROQUE) {
+			int origemT = destino > origem ? origem + 3 : origem - 4;
+			PecaXadrez torre = retiraPeca(origemT);
+			colocaPeca(torre, (origem + destino) / 2);
 			torre.aumentaContagemMovimento();
 		}
 
-		// #MovimentoEspecial en passant
-		if (p instanceof Peao) {
-			if (origem.getColuna() != destino.getColuna() && pecaCapturada == null) {
-				Posicao posicaoPeao;
-				if (p.getCor() == Cor.BRANCO) {
-					posicaoPeao = new Posicao(destino.getLinha() + 1, destino.getColuna());
-				} else {
-					posicaoPeao = new Posicao(destino.getLinha() - 1, destino.getColuna());
-				}
-				pecaCapturada = tabuleiro.removePeca(posicaoPeao);
-				pecasCapturadas.add(pecaCapturada);
-				pecasNoTabuleiro.remove(pecaCapturada);
-			}
+		if (alturaPilha == pilhaMovimentos.length) {
+			aumentaPilha();
+		}
+		pilhaMovimentos[alturaPilha] = movimento;
+		pilhaPecas[alturaPilha] = p;
+		pilhaCapturadas[alturaPilha] = pecaCapturada;
+		pilhaEnPassant[alturaPilha] = enPassantVuneravel;
+		pilhaEstado[alturaPilha] = (byte) ((xeque ? 1 : 0) | (xequeMate ? 2 : 0));
+		pilhaChaves[alturaPilha] = chaveAnterior;
+		pilhaRelogio[alturaPilha] = relogioMeiosLances;
+		alturaPilha++;
+
+		if (p.getTipo() == TipoPeca.PEAO || pecaCapturada != null) {
+			relogioMeiosLances = 0;
+		} else {
+			relogioMeiosLances++;
 		}
 
-		return pecaCapturada;
+		enPassantVuneravel = (tipo == Movimento.PEAO_DUPLO) ? p : null;
+		int direitos = direitosRoque();
+		if (direitos != direitosAnteriores) {
+			chave ^= Zobrist.ROQUE[direitosAnteriores] ^ Zobrist.ROQUE[direitos];
+		}
+		chave ^= Zobrist.LADO_PRETO;
+		xequeMate = false;
+		// So aplicaMovimento marca a peca promovida; depois de qualquer outro movimento nao ha troca pendente
+		promovido = null;
+		proximoTurno();
+		chave ^= chaveEnPassant();
+		xeque = testaXeque(jogadorAtual);
 	}
 
-	private void desfazMovimento(Posicao fonte, Posicao destino, Peca pecaCapturada) {
-		PecaXadrez p = (PecaXadrez) tabuleiro.removePeca(destino);
+	public void unmakeMove() {
+		if (alturaPilha == 0) {
+			throw new IllegalStateException("Nao ha movimento para desfazer");
+		}
+		alturaPilha--;
+		int movimento = pilhaMovimentos[alturaPilha];
+		PecaXadrez p = pilhaPecas[alturaPilha];
+		PecaXadrez pecaCapturada = pilhaCapturadas[alturaPilha];
+		enPassantVuneravel = pilhaEnPassant[alturaPilha];
+		xeque = (pilhaEstado[alturaPilha] & 1) != 0;
+		xequeMate = (pilhaEstado[alturaPilha] & 2) != 0;
+		promovido = null;
+		long chaveAnterior = pilhaChaves[alturaPilha];
+		relogioMeiosLances = pilhaRelogio[alturaPilha];
+		pilhaPecas[alturaPilha] = null;
+		pilhaCapturadas[alturaPilha] = null;
+		pilhaEnPassant[alturaPilha] = null;
+		turno--;
+		jogadorAtual = oponente(jogadorAtual);
+
+		int origem = Movimento.origem(movimento);
+		int destino = Movimento.destino(movimento);
+		int tipo = Movimento.tipo(movimento);
+
+		// #MovimentoEspecial Roque
+		if (tipo == Movimento.ROQUE) {
+			int origemT = destino > origem ? origem + 3 : origem - 4;
+			PecaXadrez torre = retiraPeca((origem + destino) / 2);
+			colocaPeca(torre, origemT);
+			torre.diminuiContagemMovimento();
+		}
+
+		// Na promocao a peca no destino nao e o peao que se moveu
+		PecaXadrez pecaDestino = retiraPeca(destino);
+		if (pecaDestino != p) {
+			removeDaLista(pecaDestino);
+			adicionaNaLista(p);
+		}
 		p.diminuiContagemMovimento();
-		tabuleiro.coloquePeca(p, fonte);
+		colocaPeca(p, origem);
 
 		if (pecaCapturada != null) {
-			tabuleiro.coloquePeca(pecaCapturada, destino);
-			pecasCapturadas.remove(pecaCapturada);
-			pecasNoTabuleiro.add(pecaCapturada);
+			colocaPeca(pecaCapturada, tipo == Movimento.EN_PASSANT ? casaEnPassant(p, destino) : destino);
+			adicionaNaLista(pecaCapturada);
 		}
+		chave = chaveAnterior;
+	}
 
-		// #MovimentoEspecial Roque do lado do rei
-		if (p instanceof Rei && destino.getColuna() == fonte.getColuna() + 2) {
-			Posicao fonteT = new Posicao(fonte.getLinha(), fonte.getColuna() + 3);
-			Posicao destinoT = new Posicao(fonte.getLinha(), fonte.getColuna() + 1);
-			PecaXadrez torre = (PecaXadrez) tabuleiro.removePeca(destinoT);
-			tabuleiro.coloquePeca(torre, fonteT);
-			torre.aumentaContagemMovimento();
+	// Toda mudanca de peca no tabuleiro passa por aqui para manter a chave, a avaliacao, a casa do rei e a
+	// versao da posicao em dia
+	private void colocaPeca(PecaXadrez peca, int casa) {
+		tabuleiro.coloquePeca(peca, casa);
+		versao++;
+		int indice = peca.getIndiceBitboard();
+		chave ^= Zobrist.PECAS[indice][casa];
+		if (peca.getCor() == Cor.BRANCO) {
+			meioJogo += TabelasPosicionais.MEIO_JOGO[indice][casa];
+			finalJogo += TabelasPosicionais.FINAL[indice][casa];
+		} else {
+			meioJogo -= TabelasPosicionais.MEIO_JOGO[indice][casa];
+			finalJogo -= TabelasPosicionais.FINAL[indice][casa];
+		}
+		fase += TabelasPosicionais.FASE[peca.getTipo().ordinal()];
+		if (peca.getTipo() == TipoPeca.REI) {
+			casaRei[peca.getCor().ordinal()] = casa;
 		}
+	}
 
-		// #MovimentoEspecial Roque do lado da Rainh
-		if (p instanceof Rei && destino.getColuna() == fonte.getColuna() - 2) {
-			Posicao fonteT = new Posicao(fonte.getLinha(), fonte.getColuna() - 4);
-			Posicao destinoT = new Posicao(fonte.getLinha(), fonte.getColuna() - 1);
-			PecaXadrez torre = (PecaXadrez) tabuleiro.removePeca(destinoT);
-			tabuleiro.coloquePeca(torre, fonteT);
-			torre.aumentaContagemMovimento();
+	private PecaXadrez retiraPeca(int casa) {
+		PecaXadrez peca = (PecaXadrez) tabuleiro.removePeca(casa);
+		if (peca != null) {
+			versao++;
+			int indice = peca.getIndiceBitboard();
+			chave ^= Zobrist.PECAS[indice][casa];
+			if (peca.getCor() == Cor.BRANCO) {
+				meioJogo -= TabelasPosicionais.MEIO_JOGO[indice][casa];
+				finalJogo -= TabelasPosicionais.FINAL[indice][casa];
+			} else {
+				meioJogo += TabelasPosicionais.MEIO_JOGO[indice][casa];
+				finalJogo += TabelasPosicionais.FINAL[indice][casa];
+			}
+			fase -= TabelasPosicionais.FASE[peca.getTipo().ordinal()];
+			if (peca.getTipo() == TipoPeca.REI) {
+				casaRei[peca.getCor().ordinal()] = -1;
+			}
 		}
+		return peca;
+	}
 
-		// #MovimentoEspecial en passant
-		if (p instanceof Peao) {
-			if (fonte.getColuna() != destino.getColuna() && pecaCapturada == enPassantVuneravel) {
-				PecaXadrez peao = (PecaXadrez) tabuleiro.removePeca(destino);
-				Posicao posicaoPeao;
-				if (p.getCor() == Cor.BRANCO) {
-					posicaoPeao = new Posicao(3, destino.getColuna());
-				} else {
-					posicaoPeao = new Posicao(4, destino.getColuna());
-				}
-				tabuleiro.coloquePeca(peao, posicaoPeao);
+	private void adicionaNaLista(PecaXadrez peca) {
+		int cor = peca.getCor().ordinal();
+		peca.indiceLista = quantidadePecas[cor];
+		pecasPorCor[cor][quantidadePecas[cor]++] = peca;
+	}
+
+	private void removeDaLista(PecaXadrez peca) {
+		int cor = peca.getCor().ordinal();
+		PecaXadrez ultima = pecasPorCor[cor][--quantidadePecas[cor]];
+		pecasPorCor[cor][peca.indiceLista] = ultima;
+		ultima.indiceLista = peca.indiceLista;
+		pecasPorCor[cor][quantidadePecas[cor]] = null;
+	}
+
+	// Direitos de roque derivados da contagem de movimentos do rei e das torres:
+	// 1 = branco lado do rei, 2 = branco lado da rainha, 4 = preto lado do rei, 8 = preto lado da rainha
+	private int direitosRoque() {
+		int direitos = 0;
+		if (naoMovida(60, TipoPeca.REI, Cor.BRANCO)) {
+			if (naoMovida(63, TipoPeca.TORRE, Cor.BRANCO)) {
+				direitos |= 1;
+			}
+			if (naoMovida(56, TipoPeca.TORRE, Cor.BRANCO)) {
+				direitos |= 2;
+			}
+		}
+		if (naoMovida(4, TipoPeca.REI, Cor.PRETO)) {
+			if (naoMovida(7, TipoPeca.TORRE, Cor.PRETO)) {
+				direitos |= 4;
+			}
+			if (naoMovida(0, TipoPeca.TORRE, Cor.PRETO)) {
+				direitos |= 8;
+			}
+		}
+		return direitos;
+	}
+
+	private boolean naoMovida(int casa, TipoPeca tipo, Cor cor) {
+		PecaXadrez p = (PecaXadrez) tabuleiro.pecaNaCasa(casa);
+		return p != null && p.getTipo() == tipo && p.getCor() == cor && p.getContaMovimento() == 0;
+	}
+
+	long calculaChave() {
+		long c = 0L;
+		for (int casa = 0; casa < 64; casa++) {
+			Peca p = tabuleiro.pecaNaCasa(casa);
+			if (p != null) {
+				c ^= Zobrist.PECAS[p.getIndiceBitboard()][casa];
 			}
 		}
+		c ^= Zobrist.ROQUE[direitosRoque()];
+		c ^= chaveEnPassant();
+		if (jogadorAtual == Cor.PRETO) {
+			c ^= Zobrist.LADO_PRETO;
+		}
+		return c;
+	}
+
+	// A coluna en passant so entra na chave quando um peao do jogador atual ataca a casa de captura;
+	// sem isso a mesma posicao teria chaves diferentes conforme a ordem dos lances
+	private long chaveEnPassant() {
+		if (enPassantVuneravel == null) {
+			return 0L;
+		}
+		int alvo = enPassantVuneravel.getCasa() + (enPassantVuneravel.getCor() == Cor.BRANCO ? 8 : -8);
+		long atacantes = Bitboards.peao(alvo, oponente(jogadorAtual))
+				& Bitboards.pecas(tabuleiro, TipoPeca.PEAO, jogadorAtual);
+		if (atacantes == 0) {
+			return 0L;
+		}
+		return Zobrist.EN_PASSANT[alvo % 8];
+	}
+
+	// #MovimentoEspecial en passant: casa do peao capturado
+	private int casaEnPassant(PecaXadrez peao, int destino) {
+		return (peao.getCor() == Cor.BRANCO) ? destino + 8 : destino - 8;
+	}
+
+	private void aumentaPilha() {
+		int tamanho = pilhaMovimentos.length * 2;
+		pilhaMovimentos = Arrays.copyOf(pilhaMovimentos, tamanho);
+		pilhaPecas = Arrays.copyOf(pilhaPecas, tamanho);
+		pilhaCapturadas = Arrays.copyOf(pilhaCapturadas, tamanho);
+		pilhaEnPassant = Arrays.copyOf(pilhaEnPassant, tamanho);
+		pilhaEstado = Arrays.copyOf(pilhaEstado, tamanho);
+		pilhaChaves = Arrays.copyOf(pilhaChaves, tamanho);
+		pilhaRelogio = Arrays.copyOf(pilhaRelogio, tamanho);
+	}
+
+	public int[] legalMoves() {
+		int[] buffer = new int[Movimento.MAXIMO_POR_POSICAO];
+		return Arrays.copyOf(buffer, legalMoves(buffer));
 	}
 
-	private void validaPosicaoFonte(Posicao posicao) {
-		if (!tabuleiro.haUmaPeca(posicao)) {
-			throw new ChessException("Nao existe peca na posicao de origem");
+	// Movimentos legais da posicao atual no buffer movimentos, do cache quando a posicao nao mudou
+	private int movimentosLegais() {
+		if (versaoMovimentos == versao) {
+			acertosMovimentos++;
+			return quantidadeMovimentos;
 		}
-		if (jogadorAtual != ((PecaXadrez) tabuleiro.peca(posicao)).getCor()) {
-			throw new ChessException("A peca escolhida nao e sua");
+		falhasMovimentos++;
+		quantidadeMovimentos = legalMoves(movimentos);
+		// O en passant e testado fazendo e desfazendo o movimento, o que tambem muda a versao
+		versaoMovimentos = versao;
+		return quantidadeMovimentos;
+	}
+
+	// Movimentos legais do jogador atual. Xeques e pecas cravadas sao calculados uma vez;
+	// so o en passant, raro, e verificado fazendo e desfazendo o movimento
+	public int legalMoves(int[] movimentos) {
+		Cor cor = jogadorAtual;
+		Cor oponente = oponente(cor);
+		int rei = casaRei(cor);
+		long ocupacao = tabuleiro.getOcupacao();
+		long xequeadores = atacantes(rei, oponente, ocupacao);
+		int numeroXeques = Long.bitCount(xequeadores);
+		long resolveXeque = -1L;
+		if (numeroXeques == 1) {
+			resolveXeque = xequeadores | Bitboards.entre(rei, Long.numberOfTrailingZeros(xequeadores));
 		}
-		if (!tabuleiro.peca(posicao).existeAlgumMovimentoPossivel()) {
-			throw new ChessException("Nao existe movimentos possiveis para a peca escolhida");
+		long cravadas = cravadas(rei, cor, oponente);
+		long semRei = ocupacao & ~(1L << rei);
+
+		int total = geraMovimentos(movimentos);
+		int n = 0;
+		for (int i = 0; i < total; i++) {
+			int movimento = movimentos[i];
+			int origem = Movimento.origem(movimento);
+			int destino = Movimento.destino(movimento);
+			boolean legal;
+			if (origem == rei) {
+				if (Movimento.tipo(movimento) == Movimento.ROQUE) {
+					// #MovimentoEspecial Roque: o rei nao pode passar por casa atacada
+					legal = numeroXeques == 0 && atacantes((origem + destino) / 2, oponente, ocupacao) == 0
+							&& atacantes(destino, oponente, ocupacao) == 0;
+				} else {
+					legal = atacantes(destino, oponente, semRei) == 0;
+				}
+			} else if (numeroXeques > 1) {
+				legal = false;
+			} else if (Movimento.tipo(movimento) == Movimento.EN_PASSANT) {
+				makeMove(movimento);
+				legal = !testaXeque(cor);
+				unmakeMove();
+			} else {
+				legal = (resolveXeque & (1L << destino)) != 0
+						&& ((cravadas & (1L << origem)) == 0 || (Bitboards.reta(rei, origem) & (1L << destino)) != 0);
+			}
+			if (legal) {
+				movimentos[n++] = movimento;
+			}
 		}
+		return n;
 	}
 
-	private void validaPosicaoDestino(Posicao fonte, Posicao destino) {
-		if (!tabuleiro.peca(fonte).movimentoPossivel(destino)) {
-			throw new ChessException("A peca escolhida nao pode se mover para a posicao de destino");
+	// Pecas da cor cravadas contra o proprio rei por torres, bispos ou rainhas do oponente
+	private long cravadas(int rei, Cor cor, Cor oponente) {
+		long ocupacao = tabuleiro.getOcupacao();
+		long proprias = Bitboards.ocupacao(tabuleiro, cor);
+		long rainhas = Bitboards.pecas(tabuleiro, TipoPeca.RAINHA, oponente);
+		long atiradores = (Bitboards.torre(rei, ocupacao & ~proprias)
+				& (Bitboards.pecas(tabuleiro, TipoPeca.TORRE, oponente) | rainhas))
+				| (Bitboards.bispo(rei, ocupacao & ~proprias)
+						& (Bitboards.pecas(tabuleiro, TipoPeca.BISPO, oponente) | rainhas));
+		long cravadas = 0L;
+		while (atiradores != 0) {
+			long entre = Bitboards.entre(rei, Long.numberOfTrailingZeros(atiradores)) & ocupacao;
+			if (Long.bitCount(entre) == 1 && (entre & proprias) != 0) {
+				cravadas |= entre;
+			}
+			atiradores &= atiradores - 1;
 		}
+		return cravadas;
 	}
 
 	private void proximoTurno() {
@@ -264,59 +808,253 @@ public class PartidaXadrez {
 		return (cor == Cor.BRANCO) ? Cor.PRETO : Cor.BRANCO;
 	}
 
-	private PecaXadrez rei(Cor cor) {
-		List<Peca> lista = pecasNoTabuleiro.stream().filter(x -> ((PecaXadrez) x).getCor() == cor)
-				.collect(Collectors.toList());
-		for (Peca peca : lista) {
-			if (peca instanceof Rei) {
-				return (PecaXadrez) peca;
-			}
+	private int casaRei(Cor cor) {
+		int casa = casaRei[cor.ordinal()];
+		if (casa < 0) {
+			throw new IllegalStateException("Nao existe o rei " + cor + " no tabuleiro");
 		}
-		throw new IllegalStateException("Nao existe o rei " + cor + " no tabuleiro");
+		return casa;
+	}
+
+	// A casa e atacada por alguma peca da cor? Parte da propria casa: uma peca de cada tipo
+	// colocada nela ataca exatamente as pecas desse tipo que a atacam
+	public boolean casaAtacada(int casa, Cor cor) {
+		return atacantes(casa, cor, tabuleiro.getOcupacao()) != 0;
+	}
+
+	private long atacantes(int casa, Cor cor, long ocupacao) {
+		long rainhas = Bitboards.pecas(tabuleiro, TipoPeca.RAINHA, cor);
+		long diagonais = Bitboards.pecas(tabuleiro, TipoPeca.BISPO, cor) | rainhas;
+		long retas = Bitboards.pecas(tabuleiro, TipoPeca.TORRE, cor) | rainhas;
+		return (Bitboards.peao(casa, oponente(cor)) & Bitboards.pecas(tabuleiro, TipoPeca.PEAO, cor))
+				| (Bitboards.cavalo(casa) & Bitboards.pecas(tabuleiro, TipoPeca.CAVALO, cor))
+				| (Bitboards.rei(casa) & Bitboards.pecas(tabuleiro, TipoPeca.REI, cor))
+				| (Bitboards.bispo(casa, ocupacao) & diagonais)
+				| (Bitboards.torre(casa, ocupacao) & retas);
+	}
+
+	public boolean casaAtacada(PosicaoXadrez posicao, Cor cor) {
+		return casaAtacada(posicao.getCasa(), cor);
 	}
 
 	private boolean testaXeque(Cor cor) {
-		Posicao posicaoRei = rei(cor).getPosicaoXadrez().toPosicao();
-		List<Peca> pecasOponente = pecasNoTabuleiro.stream().filter(x -> ((PecaXadrez) x).getCor() == oponente(cor))
-				.collect(Collectors.toList());
-		for (Peca peca : pecasOponente) {
-			boolean[][] mat = peca.movimentosPossiveis();
-			if (mat[posicaoRei.getLinha()][posicaoRei.getColuna()]) {
-				return true;
+		return casaAtacada(casaRei(cor), oponente(cor));
+	}
+
+	private boolean testaXequeMate(Cor cor) {
+		return testaXeque(cor) && movimentosLegais() == 0;
+	}
+
+	public String toFen() {
+		StringBuilder sb = new StringBuilder(90);
+		for (int linha = 0; linha < 8; linha++) {
+			int vazias = 0;
+			for (int coluna = 0; coluna < 8; coluna++) {
+				PecaXadrez p = (PecaXadrez) tabuleiro.pecaNaCasa(linha * 8 + coluna);
+				if (p == null) {
+					vazias++;
+					continue;
+				}
+				if (vazias > 0) {
+					sb.append(vazias);
+					vazias = 0;
+				}
+				char letra = LETRAS_FEN.charAt(p.getTipo().ordinal());
+				sb.append(p.getCor() == Cor.BRANCO ? Character.toUpperCase(letra) : letra);
+			}
+			if (vazias > 0) {
+				sb.append(vazias);
+			}
+			if (linha < 7) {
+				sb.append('/');
 			}
 		}
-		return false;
+		sb.append(jogadorAtual == Cor.BRANCO ? " w " : " b ");
+
+		int direitos = direitosRoque();
+		if (direitos == 0) {
+			sb.append('-');
+		}
+		for (int i = 0; i < 4; i++) {
+			if ((direitos & (1 << i)) != 0) {
+				sb.append("KQkq".charAt(i));
+			}
+		}
+
+		sb.append(' ');
+		if (enPassantVuneravel == null) {
+			sb.append('-');
+		} else {
+			int alvo = casaEnPassant(enPassantVuneravel, enPassantVuneravel.getCasa());
+			sb.append(PosicaoXadrez.nome(alvo));
+		}
+		sb.append(' ').append(relogioMeiosLances).append(' ').append((turno + 1) / 2);
+		return sb.toString();
 	}
 
-	private boolean testaXequeMate(Cor cor) {
-		if (!testaXeque(cor)) {
-			return false;
-		}
-		List<Peca> lista = pecasNoTabuleiro.stream().filter(x -> ((PecaXadrez) x).getCor() == cor)
-				.collect(Collectors.toList());
-		for (Peca peca : lista) {
-			boolean[][] mat = peca.movimentosPossiveis();
-			for (int i = 0; i < tabuleiro.getLinhas(); i++) {
-				for (int j = 0; j < tabuleiro.getColunas(); j++) {
-					if (mat[i][j]) {
-						Posicao fonte = ((PecaXadrez) peca).getPosicaoXadrez().toPosicao();
-						Posicao destino = new Posicao(i, j);
-						Peca pecaCapturada = realizaMovimento(fonte, destino);
-						boolean testaXeque = testaXeque(cor);
-						desfazMovimento(fonte, destino, pecaCapturada);
-						if (!testaXeque) {
-							return false;
-						}
-					}
+	// Le os campos da FEN direto da sequencia, sem split nem substring
+	private void carregaFen(CharSequence fen) {
+		int i = 0;
+		int linha = 0;
+		int coluna = 0;
+		while (i < fen.length() && fen.charAt(i) != ' ') {
+			char c = fen.charAt(i++);
+			if (c == '/') {
+				if (coluna != 8) {
+					throw new ChessException("FEN invalida: linha " + (8 - linha) + " incompleta");
+				}
+				linha++;
+				coluna = 0;
+			} else if (c >= '1' && c <= '8') {
+				coluna += c - '0';
+			} else {
+				int tipo = LETRAS_FEN.indexOf(Character.toLowerCase(c));
+				if (tipo < 0 || linha > 7 || coluna > 7) {
+					throw new ChessException("FEN invalida: caractere '" + c + "' na posicao " + (i - 1));
+				}
+				Cor cor = Character.isUpperCase(c) ? Cor.BRANCO : Cor.PRETO;
+				PecaXadrez peca = novaPeca(TIPOS[tipo], cor, linha * 8 + coluna);
+				colocaPeca(peca, linha * 8 + coluna);
+				adicionaNaLista(peca);
+				coluna++;
+			}
+			if (coluna > 8) {
+				throw new ChessException("FEN invalida: linha " + (8 - linha) + " longa demais");
+			}
+		}
+		if (linha != 7 || coluna != 8) {
+			throw new ChessException("FEN invalida: o tabuleiro deve ter 8 linhas completas");
+		}
+		if (casaRei[0] < 0 || casaRei[1] < 0
+				|| Long.bitCount(Bitboards.pecas(tabuleiro, TipoPeca.REI, Cor.BRANCO)) != 1
+				|| Long.bitCount(Bitboards.pecas(tabuleiro, TipoPeca.REI, Cor.PRETO)) != 1) {
+			throw new ChessException("FEN invalida: cada jogador deve ter exatamente um rei");
+		}
+
+		i = pulaEspacos(fen, i);
+		char lado = i < fen.length() ? fen.charAt(i++) : 'w';
+		if (lado != 'w' && lado != 'b') {
+			throw new ChessException("FEN invalida: jogador deve ser w ou b");
+		}
+		jogadorAtual = (lado == 'w') ? Cor.BRANCO : Cor.PRETO;
+
+		int direitos = 0;
+		i = pulaEspacos(fen, i);
+		while (i < fen.length() && fen.charAt(i) != ' ') {
+			char c = fen.charAt(i++);
+			int direito = "KQkq".indexOf(c);
+			if (direito >= 0) {
+				direitos |= 1 << direito;
+			} else if (c != '-') {
+				throw new ChessException("FEN invalida: roque '" + c + "'");
+			}
+		}
+		marcaMovidas(direitos);
+
+		i = pulaEspacos(fen, i);
+		if (i < fen.length() && fen.charAt(i) != '-') {
+			if (i + 1 >= fen.length() || fen.charAt(i) < 'a' || fen.charAt(i) > 'h' || fen.charAt(i + 1) < '1'
+					|| fen.charAt(i + 1) > '8') {
+				throw new ChessException("FEN invalida: casa en passant");
+			}
+			int alvo = (8 - (fen.charAt(i + 1) - '0')) * 8 + (fen.charAt(i) - 'a');
+			int casaPeao = (jogadorAtual == Cor.BRANCO) ? alvo + 8 : alvo - 8;
+			PecaXadrez peao = (casaPeao >= 0 && casaPeao < 64) ? (PecaXadrez) tabuleiro.pecaNaCasa(casaPeao) : null;
+			if (peao == null || peao.getTipo() != TipoPeca.PEAO || peao.getCor() == jogadorAtual) {
+				throw new ChessException("FEN invalida: nao ha peao vulneravel ao en passant");
+			}
+			enPassantVuneravel = peao;
+			i += 2;
+		} else {
+			i++;
+		}
+
+		i = pulaEspacos(fen, i);
+		relogioMeiosLances = 0;
+		int lance = 1;
+		if (i < fen.length()) {
+			int fim = fimDoCampo(fen, i);
+			relogioMeiosLances = leInteiro(fen, i, fim);
+			i = pulaEspacos(fen, fim);
+			if (i < fen.length()) {
+				lance = Math.max(1, leInteiro(fen, i, fimDoCampo(fen, i)));
+			}
+		}
+		turno = 2 * lance - (jogadorAtual == Cor.BRANCO ? 1 : 0);
+	}
+
+	// Rei e torres sem direito de roque contam como ja movidos, assim como peoes fora da linha inicial
+	private void marcaMovidas(int direitos) {
+		for (int cor = 0; cor < 2; cor++) {
+			for (int i = 0; i < quantidadePecas[cor]; i++) {
+				PecaXadrez p = pecasPorCor[cor][i];
+				int casa = p.getCasa();
+				boolean movida;
+				if (p.getTipo() == TipoPeca.REI) {
+					int ladoRei = p.getCor() == Cor.BRANCO ? 1 : 4;
+					movida = casa != (p.getCor() == Cor.BRANCO ? 60 : 4) || (direitos & (ladoRei | ladoRei << 1)) == 0;
+				} else if (p.getTipo() == TipoPeca.TORRE) {
+					movida = !((casa == 63 && p.getCor() == Cor.BRANCO && (direitos & 1) != 0)
+							|| (casa == 56 && p.getCor() == Cor.BRANCO && (direitos & 2) != 0)
+							|| (casa == 7 && p.getCor() == Cor.PRETO && (direitos & 4) != 0)
+							|| (casa == 0 && p.getCor() == Cor.PRETO && (direitos & 8) != 0));
+				} else if (p.getTipo() == TipoPeca.PEAO) {
+					movida = (1L << casa & (p.getCor() == Cor.BRANCO ? Bitboards.LINHA_2 : Bitboards.LINHA_7)) == 0;
+				} else {
+					movida = false;
+				}
+				if (movida) {
+					p.aumentaContagemMovimento();
 				}
 			}
 		}
-		return true;
+	}
+
+	private static int pulaEspacos(CharSequence s, int i) {
+		while (i < s.length() && s.charAt(i) == ' ') {
+			i++;
+		}
+		return i;
+	}
+
+	private static int fimDoCampo(CharSequence s, int i) {
+		while (i < s.length() && s.charAt(i) != ' ') {
+			i++;
+		}
+		return i;
+	}
+
+	private static int leInteiro(CharSequence s, int inicio, int fim) {
+		if (inicio == fim) {
+			throw new ChessException("FEN invalida: numero esperado");
+		}
+		int valor = 0;
+		for (int i = inicio; i < fim; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new ChessException("FEN invalida: numero esperado");
+			}
+			valor = valor * 10 + (c - '0');
+		}
+		return valor;
+	}
+
+	private PecaXadrez novaPeca(TipoPeca tipo, Cor cor, int casa) {
+		if (tipo == TipoPeca.REI) {
+			return new Rei(tabuleiro, cor, this);
+		}
+		if (tipo == TipoPeca.PEAO) {
+			if ((1L << casa & (Bitboards.LINHA_8 | Bitboards.LINHA_1)) != 0) {
+				throw new ChessException("FEN invalida: peao na primeira ou ultima linha");
+			}
+			return new Peao(tabuleiro, cor, this);
+		}
+		return novaPeca(tipo, cor);
 	}
 
 	private void coloqueNovaPeca(char coluna, int linha, PecaXadrez pecaXadrez) {
-		tabuleiro.coloquePeca(pecaXadrez, new PosicaoXadrez(coluna, linha).toPosicao());
-		pecasNoTabuleiro.add(pecaXadrez);
+		colocaPeca(pecaXadrez, PosicaoXadrez.de(coluna, linha).getCasa());
+		adicionaNaLista(pecaXadrez);
 	}
 
 	private void setupInicial() {
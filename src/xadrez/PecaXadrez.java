@@ -9,6 +9,9 @@ public abstract class PecaXadrez extends Peca {
 	private Cor cor;
 	private int contaMovimento;
 
+	// Posicao na lista de pecas da cor mantida por PartidaXadrez
+	int indiceLista;
+
 	public PecaXadrez(Tabuleiro tabuleiro, Cor cor) {
 		super(tabuleiro);
 		this.cor = cor;
@@ -18,6 +21,49 @@ public abstract class PecaXadrez extends Peca {
 		return cor;
 	}
 
+	public abstract TipoPeca getTipo();
+
+	@Override
+	public int getIndiceBitboard() {
+		return Bitboards.indice(getTipo(), cor);
+	}
+
+	// Escreve os movimentos codificados (ver Movimento) a partir de movimentos[n] e
+	// retorna a nova quantidade; nao aloca nada
+	public abstract int geraMovimentos(int[] movimentos, int n);
+
+	@Override
+	public boolean[][] movimentosPossiveis() {
+		boolean[][] mat = new boolean[getTabuleiro().getLinhas()][getTabuleiro().getColunas()];
+		long destinos = destinosPossiveis();
+		while (destinos != 0) {
+			int casa = Long.numberOfTrailingZeros(destinos);
+			mat[casa / getTabuleiro().getColunas()][casa % getTabuleiro().getColunas()] = true;
+			destinos &= destinos - 1;
+		}
+		return mat;
+	}
+
+	@Override
+	public boolean movimentoPossivel(Posicao posicao) {
+		return (destinosPossiveis() & (1L << getTabuleiro().casa(posicao))) != 0;
+	}
+
+	@Override
+	public boolean existeAlgumMovimentoPossivel() {
+		return destinosPossiveis() != 0;
+	}
+
+	private long destinosPossiveis() {
+		int[] movimentos = new int[Movimento.MAXIMO_POR_PECA];
+		int n = geraMovimentos(movimentos, 0);
+		long destinos = 0L;
+		for (int i = 0; i < n; i++) {
+			destinos |= 1L << Movimento.destino(movimentos[i]);
+		}
+		return destinos;
+	}
+
 	public int getContaMovimento() {
 		return contaMovimento;
 	}
@@ -31,7 +77,19 @@ public abstract class PecaXadrez extends Peca {
 	}
 
 	public PosicaoXadrez getPosicaoXadrez() {
-		return PosicaoXadrez.paraPosicao(posicao);
+		return posicao == null ? null : PosicaoXadrez.paraPosicao(posicao);
+	}
+
+	public int getCasa() {
+		return posicao == null ? -1 : getTabuleiro().casa(posicao);
+	}
+
+	protected long pecasProprias() {
+		return Bitboards.ocupacao(getTabuleiro(), cor);
+	}
+
+	protected long pecasOponentes() {
+		return getTabuleiro().getOcupacao() & ~pecasProprias();
 	}
 
 	protected boolean haPecaOponente(Posicao posicao) {
@@ -39,4 +97,12 @@ public abstract class PecaXadrez extends Peca {
 		return p != null && p.getCor() != cor;
 	}
 
+	protected static int adicionaMovimentos(int[] movimentos, int n, int origem, long destinos) {
+		while (destinos != 0) {
+			movimentos[n++] = Movimento.codifica(origem, Long.numberOfTrailingZeros(destinos));
+			destinos &= destinos - 1;
+		}
+		return n;
+	}
+
 }
@@ -2,10 +2,27 @@ package xadrez;
 
 import tabuleiro.Posicao;
 
-public class PosicaoXadrez {
+// Imutavel. As 64 casas sao criadas uma vez e obtidas por de(coluna, linha) ou daCasa(casa);
+// coluna, linha, nome e as conversoes de e para Posicao sao consultas a tabelas
+public final class PosicaoXadrez {
 
-	private char coluna;
-	private int linha;
+	private static final PosicaoXadrez[] CASAS = new PosicaoXadrez[64];
+	private static final char[] COLUNAS = new char[64];
+	private static final int[] LINHAS = new int[64];
+	private static final String[] NOMES = new String[64];
+
+	static {
+		for (int casa = 0; casa < 64; casa++) {
+			COLUNAS[casa] = (char) ('a' + casa % 8);
+			LINHAS[casa] = 8 - casa / 8;
+			NOMES[casa] = "" + COLUNAS[casa] + LINHAS[casa];
+			CASAS[casa] = new PosicaoXadrez(COLUNAS[casa], LINHAS[casa]);
+		}
+	}
+
+	private final char coluna;
+	private final int linha;
+	private final int casa;
 
 	public PosicaoXadrez(char coluna, int linha) {
 		if (coluna < 'a' || coluna > 'h' || linha < 1 || linha > 8) {
@@ -13,6 +30,32 @@ public class PosicaoXadrez {
 		}
 		this.coluna = coluna;
 		this.linha = linha;
+		this.casa = (8 - linha) * 8 + (coluna - 'a');
+	}
+
+	public static PosicaoXadrez de(char coluna, int linha) {
+		if (coluna < 'a' || coluna > 'h' || linha < 1 || linha > 8) {
+			throw new ChessException("Erro instanciado a PosicaoXadrez, valores validos sao de a1 ate h8");
+		}
+		return CASAS[(8 - linha) * 8 + (coluna - 'a')];
+	}
+
+	// Casa no formato do tabuleiro: a8 = 0, h1 = 63
+	public static PosicaoXadrez daCasa(int casa) {
+		return CASAS[casa];
+	}
+
+	public static char coluna(int casa) {
+		return COLUNAS[casa];
+	}
+
+	public static int linha(int casa) {
+		return LINHAS[casa];
+	}
+
+	// Nome algebrico da casa, por exemplo e4
+	public static String nome(int casa) {
+		return NOMES[casa];
 	}
 
 	public char getColuna() {
@@ -23,17 +66,31 @@ public class PosicaoXadrez {
 		return linha;
 	}
 
+	public int getCasa() {
+		return casa;
+	}
+
 	protected Posicao toPosicao() {
-		return new Posicao(8 - linha, coluna - 'a');
+		return Posicao.valueOf(casa / 8, casa % 8);
 	}
 
 	protected static PosicaoXadrez paraPosicao(Posicao posicao) {
-		return new PosicaoXadrez((char) ('a' + posicao.getColuna()), 8 - posicao.getLinha());
+		return CASAS[posicao.getLinha() * 8 + posicao.getColuna()];
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof PosicaoXadrez && ((PosicaoXadrez) obj).casa == casa;
+	}
+
+	@Override
+	public int hashCode() {
+		return casa;
 	}
 
 	@Override
 	public String toString() {
-		return "" + coluna + linha;
+		return NOMES[casa];
 	}
 
 }
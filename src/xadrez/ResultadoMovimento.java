@@ -0,0 +1,40 @@
+package xadrez;
+
+// Codigos devolvidos pelo caminho de validacao sem excecoes de PartidaXadrez (validaMovimento e
+// tentaMovimento). A API antiga lanca, para cada codigo, a mesma ChessException pre-alocada e sem pilha
+public final class ResultadoMovimento {
+
+	public static final int OK = 0;
+	public static final int FORA_DO_TABULEIRO = 1;
+	public static final int SEM_PECA_NA_ORIGEM = 2;
+	public static final int PECA_DO_OPONENTE = 3;
+	public static final int SEM_MOVIMENTOS = 4;
+	public static final int DESTINO_INVALIDO = 5;
+	public static final int XEQUE_PROPRIO = 6;
+
+	private static final String[] MENSAGENS = { "Movimento valido", "Posicao fora do tabuleiro",
+			"Nao existe peca na posicao de origem", "A peca escolhida nao e sua",
+			"Nao existe movimentos possiveis para a peca escolhida",
+			"A peca escolhida nao pode se mover para a posicao de destino",
+			"Voce nao pode se colocar em xeque" };
+
+	private static final ChessException[] EXCECOES = new ChessException[MENSAGENS.length];
+
+	static {
+		for (int i = 1; i < MENSAGENS.length; i++) {
+			EXCECOES[i] = new ChessException(MENSAGENS[i], false);
+		}
+	}
+
+	private ResultadoMovimento() {
+	}
+
+	public static String mensagem(int codigo) {
+		return MENSAGENS[codigo];
+	}
+
+	static ChessException excecao(int codigo) {
+		return EXCECOES[codigo];
+	}
+
+}
@@ -0,0 +1,5 @@
+package xadrez;
+
+public enum TipoPeca {
+	PEAO, CAVALO, BISPO, TORRE, RAINHA, REI;
+}
@@ -0,0 +1,39 @@
+package xadrez;
+
+// Chaves aleatorias fixas para o hash Zobrist das posicoes
+final class Zobrist {
+
+	static final long[][] PECAS = new long[12][64];
+	static final long[] ROQUE = new long[16];
+	static final long[] EN_PASSANT = new long[8];
+	static final long LADO_PRETO;
+
+	private static long semente = 0x2545F4914F6CDD1DL;
+
+	static {
+		for (int i = 0; i < PECAS.length; i++) {
+			for (int casa = 0; casa < 64; casa++) {
+				PECAS[i][casa] = proximo();
+			}
+		}
+		for (int i = 0; i < ROQUE.length; i++) {
+			ROQUE[i] = proximo();
+		}
+		for (int i = 0; i < EN_PASSANT.length; i++) {
+			EN_PASSANT[i] = proximo();
+		}
+		LADO_PRETO = proximo();
+	}
+
+	private Zobrist() {
+	}
+
+	// SplitMix64, para que as chaves sejam as mesmas em toda execucao
+	private static long proximo() {
+		long z = (semente += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+}
@@ -0,0 +1,237 @@
+package xadrez.aberturas;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import xadrez.Cor;
+import xadrez.PartidaXadrez;
+import xadrez.pgn.JogoPgn;
+import xadrez.pgn.OuvintePgn;
+
+// Monta um livro de aberturas a partir de partidas lidas pelo LeitorPgn: reproduz os primeiros
+// meios-lances de cada partida e soma, para cada par posicao-movimento, 2 pontos se quem jogou
+// venceu, 1 se empatou e 0 se perdeu (1 com resultado desconhecido). Os pares ficam numa tabela
+// de enderecamento aberto em arrays paralelos; grava ordena e escreve o arquivo de LivroAberturas
+public class GeradorLivro implements OuvintePgn {
+
+	public static final int MEIOS_LANCES_PADRAO = 30;
+
+	private static final int PESO_MAXIMO = 0xFFFF;
+
+	private final int meiosLances;
+	private final int pesoMinimo;
+	private final PartidaXadrez partida = new PartidaXadrez();
+
+	private long[] chaves = new long[1 << 16];
+	private int[] movimentos = new int[1 << 16];
+	private long[] pesos = new long[1 << 16];
+	private int ocupadas;
+	private long partidas;
+
+	public GeradorLivro() {
+		this(MEIOS_LANCES_PADRAO, 1);
+	}
+
+	// Pares com peso total abaixo de pesoMinimo ficam fora do livro
+	public GeradorLivro(int meiosLances, int pesoMinimo) {
+		this.meiosLances = meiosLances;
+		this.pesoMinimo = pesoMinimo;
+	}
+
+	@Override
+	public void partidaLida(JogoPgn jogo) {
+		partidas++;
+		if (jogo.getQuantidade() == 0) {
+			return;
+		}
+		String fen = jogo.getTag("FEN");
+		if (fen != null) {
+			partida.reinicia(fen);
+		} else {
+			partida.reinicia();
+		}
+		int brancas = pontos(jogo.getResultado(), "1-0", "0-1");
+		int pretas = pontos(jogo.getResultado(), "0-1", "1-0");
+		boolean vezBrancas = partida.getVez() == Cor.BRANCO;
+		int[] lances = jogo.getMovimentos();
+		int n = Math.min(jogo.getQuantidade(), meiosLances);
+		for (int i = 0; i < n; i++) {
+			adiciona(partida.getChave(), lances[i], vezBrancas ? brancas : pretas);
+			partida.makeMove(lances[i]);
+			vezBrancas = !vezBrancas;
+		}
+	}
+
+	private static int pontos(String resultado, String vitoria, String derrota) {
+		if (vitoria.equals(resultado)) {
+			return 2;
+		}
+		return derrota.equals(resultado) ? 0 : 1;
+	}
+
+	public long getPartidas() {
+		return partidas;
+	}
+
+	// Pares posicao-movimento distintos vistos ate agora
+	public int getPares() {
+		return ocupadas;
+	}
+
+	private void adiciona(long chave, int movimento, int pontos) {
+		if (ocupadas * 2 >= chaves.length) {
+			aumenta();
+		}
+		int mascara = chaves.length - 1;
+		int i = espalha(chave, movimento) & mascara;
+		// Movimento 0 nunca e gerado e marca o slot livre
+		while (movimentos[i] != 0 && (chaves[i] != chave || movimentos[i] != movimento)) {
+			i = (i + 1) & mascara;
+		}
+		if (movimentos[i] == 0) {
+			chaves[i] = chave;
+			movimentos[i] = movimento;
+			ocupadas++;
+		}
+		pesos[i] += pontos;
+	}
+
+	private void aumenta() {
+		long[] chavesAntigas = chaves;
+		int[] movimentosAntigos = movimentos;
+		long[] pesosAntigos = pesos;
+		chaves = new long[chavesAntigas.length * 2];
+		movimentos = new int[chaves.length];
+		pesos = new long[chaves.length];
+		int mascara = chaves.length - 1;
+		for (int j = 0; j < chavesAntigas.length; j++) {
+			if (movimentosAntigos[j] != 0) {
+				int i = espalha(chavesAntigas[j], movimentosAntigos[j]) & mascara;
+				while (movimentos[i] != 0) {
+					i = (i + 1) & mascara;
+				}
+				chaves[i] = chavesAntigas[j];
+				movimentos[i] = movimentosAntigos[j];
+				pesos[i] = pesosAntigos[j];
+			}
+		}
+	}
+
+	private static int espalha(long chave, int movimento) {
+		long h = (chave ^ movimento) * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32);
+	}
+
+	// Escreve o livro e recomeca vazio; os pesos de cada posicao sao reduzidos na mesma proporcao
+	// se o maior nao couber em 16 bits. Devolve o numero de entradas gravadas
+	public int grava(Path arquivo) throws IOException {
+		int n = 0;
+		for (int i = 0; i < chaves.length; i++) {
+			if (movimentos[i] != 0 && pesos[i] >= pesoMinimo && pesos[i] > 0) {
+				chaves[n] = chaves[i];
+				movimentos[n] = movimentos[i];
+				pesos[n] = pesos[i];
+				n++;
+			}
+		}
+		if (n > LivroAberturas.MAXIMO_ENTRADAS) {
+			throw new IOException("Livro grande demais para um mapeamento: " + n + " entradas");
+		}
+		ordena(0, n - 1);
+
+		try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(LivroAberturas.MAGICO).putInt(0).putLong(n);
+			int inicio = 0;
+			while (inicio < n) {
+				int fim = inicio;
+				long maior = 0;
+				while (fim < n && chaves[fim] == chaves[inicio]) {
+					maior = Math.max(maior, pesos[fim]);
+					fim++;
+				}
+				for (int i = inicio; i < fim; i++) {
+					long peso = maior > PESO_MAXIMO ? Math.max(1, pesos[i] * PESO_MAXIMO / maior) : pesos[i];
+					if (buffer.remaining() < LivroAberturas.TAMANHO_ENTRADA) {
+						escreve(canal, buffer);
+					}
+					buffer.putLong(chaves[i]).putShort((short) movimentos[i]).putShort((short) peso);
+				}
+				inicio = fim;
+			}
+			escreve(canal, buffer);
+		} finally {
+			// Compactados e ordenados, os arrays deixaram de ser uma tabela de hash
+			chaves = new long[1 << 16];
+			movimentos = new int[1 << 16];
+			pesos = new long[1 << 16];
+			ocupadas = 0;
+		}
+		return n;
+	}
+
+	private static void escreve(FileChannel canal, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			canal.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	// Quicksort dos arrays paralelos por chave e, na mesma chave, do maior peso para o menor
+	private void ordena(int inicio, int fim) {
+		while (fim - inicio > 16) {
+			int meio = (inicio + fim) >>> 1;
+			long chavePivo = chaves[meio];
+			long pesoPivo = pesos[meio];
+			int i = inicio;
+			int j = fim;
+			while (i <= j) {
+				while (antes(chaves[i], pesos[i], chavePivo, pesoPivo)) {
+					i++;
+				}
+				while (antes(chavePivo, pesoPivo, chaves[j], pesos[j])) {
+					j--;
+				}
+				if (i <= j) {
+					troca(i++, j--);
+				}
+			}
+			// Recursao na parte menor para limitar a pilha
+			if (j - inicio < fim - i) {
+				ordena(inicio, j);
+				inicio = i;
+			} else {
+				ordena(i, fim);
+				fim = j;
+			}
+		}
+		for (int i = inicio + 1; i <= fim; i++) {
+			for (int j = i; j > inicio && antes(chaves[j], pesos[j], chaves[j - 1], pesos[j - 1]); j--) {
+				troca(j, j - 1);
+			}
+		}
+	}
+
+	private static boolean antes(long chaveA, long pesoA, long chaveB, long pesoB) {
+		return chaveA < chaveB || (chaveA == chaveB && pesoA > pesoB);
+	}
+
+	private void troca(int a, int b) {
+		long chave = chaves[a];
+		chaves[a] = chaves[b];
+		chaves[b] = chave;
+		int movimento = movimentos[a];
+		movimentos[a] = movimentos[b];
+		movimentos[b] = movimento;
+		long peso = pesos[a];
+		pesos[a] = pesos[b];
+		pesos[b] = peso;
+	}
+
+}
@@ -0,0 +1,135 @@
+package xadrez.aberturas;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import xadrez.PartidaXadrez;
+
+// Livro de aberturas mapeado em memoria. O arquivo tem um cabecalho de 16 bytes e entradas de 12
+// bytes ordenadas pela chave Zobrist da posicao (PartidaXadrez.getChave(), comparada com sinal):
+// chave (8), movimento (2, ver Movimento) e peso (2, sem sinal). As entradas de uma posicao ficam
+// juntas, da mais pesada para a mais leve, e sao achadas por busca binaria direto no mapeamento,
+// sem carregar o livro no heap. Somente leitura, pode ser consultado de varias threads
+public class LivroAberturas {
+
+	public static final String EXTENSAO = ".xlb";
+
+	// Na versao 1 a coluna en passant entrava na chave mesmo sem captura possivel; reconstrua esses livros
+	static final int MAGICO = 0x584C4232; // "XLB2"
+	static final int CABECALHO = 16;
+	static final int TAMANHO_ENTRADA = 12;
+	// Um mapeamento vai ate 2 GB
+	static final int MAXIMO_ENTRADAS = (Integer.MAX_VALUE - CABECALHO) / TAMANHO_ENTRADA;
+
+	private final ByteBuffer entradas;
+	private final int quantidade;
+
+	private LivroAberturas(ByteBuffer entradas, int quantidade) {
+		this.entradas = entradas;
+		this.quantidade = quantidade;
+	}
+
+	public static LivroAberturas abre(Path arquivo) throws IOException {
+		try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+			if (canal.size() < CABECALHO || canal.size() > CABECALHO + (long) MAXIMO_ENTRADAS * TAMANHO_ENTRADA) {
+				throw new IOException("Tamanho invalido para um livro de aberturas: " + arquivo);
+			}
+			ByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()).order(ByteOrder.LITTLE_ENDIAN);
+			long quantidade = mapa.getLong(8);
+			if (mapa.getInt(0) != MAGICO || canal.size() != CABECALHO + quantidade * TAMANHO_ENTRADA) {
+				throw new IOException("Arquivo nao e um livro de aberturas: " + arquivo);
+			}
+			return new LivroAberturas(mapa, (int) quantidade);
+		}
+	}
+
+	// Entradas do livro (pares posicao-movimento)
+	public int getQuantidade() {
+		return quantidade;
+	}
+
+	// Copia os movimentos e pesos da posicao, do mais pesado ao mais leve, e devolve quantos
+	// foram copiados (no maximo o tamanho de movimentos); 0 se a posicao nao esta no livro
+	public int consulta(long chave, int[] movimentos, int[] pesos) {
+		int n = 0;
+		for (int i = primeira(chave); i < quantidade && n < movimentos.length && chave(i) == chave; i++) {
+			int deslocamento = CABECALHO + i * TAMANHO_ENTRADA;
+			movimentos[n] = entradas.getShort(deslocamento + 8) & 0xFFFF;
+			if (pesos != null) {
+				pesos[n] = entradas.getShort(deslocamento + 10) & 0xFFFF;
+			}
+			n++;
+		}
+		return n;
+	}
+
+	public boolean contem(long chave) {
+		int i = primeira(chave);
+		return i < quantidade && chave(i) == chave;
+	}
+
+	// Movimento mais pesado da posicao, ou 0 (nenhum); uma colisao de chaves que aponte um
+	// movimento ilegal na partida tambem da 0
+	public int melhor(PartidaXadrez partida) {
+		long chave = partida.getChave();
+		int i = primeira(chave);
+		if (i >= quantidade || chave(i) != chave) {
+			return 0;
+		}
+		int movimento = entradas.getShort(CABECALHO + i * TAMANHO_ENTRADA + 8) & 0xFFFF;
+		return partida.eLegal(movimento) ? movimento : 0;
+	}
+
+	// Sorteia um movimento da posicao com probabilidade proporcional ao peso, ou 0 (nenhum)
+	public int escolhe(PartidaXadrez partida, Random aleatorio) {
+		long chave = partida.getChave();
+		int inicio = primeira(chave);
+		int fim = inicio;
+		long total = 0;
+		while (fim < quantidade && chave(fim) == chave) {
+			total += peso(fim);
+			fim++;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long sorteio = (long) (aleatorio.nextDouble() * total);
+		for (int i = inicio; i < fim; i++) {
+			sorteio -= peso(i);
+			if (sorteio < 0) {
+				int movimento = entradas.getShort(CABECALHO + i * TAMANHO_ENTRADA + 8) & 0xFFFF;
+				return partida.eLegal(movimento) ? movimento : 0;
+			}
+		}
+		return 0;
+	}
+
+	// Indice da primeira entrada com chave >= a procurada
+	private int primeira(long chave) {
+		int baixo = 0;
+		int alto = quantidade;
+		while (baixo < alto) {
+			int meio = (baixo + alto) >>> 1;
+			if (chave(meio) < chave) {
+				baixo = meio + 1;
+			} else {
+				alto = meio;
+			}
+		}
+		return baixo;
+	}
+
+	private long chave(int i) {
+		return entradas.getLong(CABECALHO + i * TAMANHO_ENTRADA);
+	}
+
+	private int peso(int i) {
+		return entradas.getShort(CABECALHO + i * TAMANHO_ENTRADA + 10) & 0xFFFF;
+	}
+
+}
@@ -0,0 +1,83 @@
+package xadrez.acervo;
+
+import java.util.Arrays;
+
+// Codificador aritmetico de faixa com 32 bits de precisao e propagacao de vai-um (como o do
+// LZMA). Cada simbolo ocupa frequencia/total da faixa e custa cerca de log2(total/frequencia)
+// bits. Os bytes de uma partida ficam num array reaproveitado de uma partida para outra
+final class CodificadorFaixa {
+
+	static final long TOPO = 1L << 24;
+	static final long MASCARA = 0xFFFFFFFFL;
+	// Total de frequencias permitido: a faixa normalizada e sempre >= TOPO
+	static final int TOTAL_MAXIMO = 1 << 16;
+
+	private long baixo;
+	private long faixa;
+	private int pendente;
+	private int quantidadePendente;
+	private byte[] bytes = new byte[256];
+	private int tamanho;
+
+	CodificadorFaixa() {
+		reinicia();
+	}
+
+	void reinicia() {
+		baixo = 0;
+		faixa = MASCARA;
+		pendente = 0;
+		quantidadePendente = 1;
+		tamanho = 0;
+	}
+
+	void codifica(int acumulado, int frequencia, int total) {
+		faixa /= total;
+		baixo += acumulado * faixa;
+		faixa *= frequencia;
+		while (faixa < TOPO) {
+			faixa <<= 8;
+			desloca();
+		}
+	}
+
+	// Emite o byte alto de baixo; bytes 0xFF ficam pendentes ate se saber se recebem o vai-um
+	private void desloca() {
+		if (baixo < 0xFF000000L || baixo > MASCARA) {
+			int vaiUm = (int) (baixo >>> 32);
+			int b = pendente;
+			do {
+				escreve(b + vaiUm);
+				b = 0xFF;
+			} while (--quantidadePendente != 0);
+			pendente = (int) (baixo >>> 24) & 0xFF;
+		}
+		quantidadePendente++;
+		baixo = (baixo & 0x00FFFFFFL) << 8;
+	}
+
+	private void escreve(int b) {
+		if (tamanho == bytes.length) {
+			bytes = Arrays.copyOf(bytes, tamanho * 2);
+		}
+		bytes[tamanho++] = (byte) b;
+	}
+
+	// Termina a partida e devolve quantos bytes de getBytes() a partir de 1 a representam: o
+	// primeiro byte e sempre 0 e os zeros do fim sao implicitos, pois o decodificador le 0
+	// depois do ultimo byte
+	int finaliza() {
+		for (int i = 0; i < 5; i++) {
+			desloca();
+		}
+		while (tamanho > 1 && bytes[tamanho - 1] == 0) {
+			tamanho--;
+		}
+		return tamanho - 1;
+	}
+
+	byte[] getBytes() {
+		return bytes;
+	}
+
+}
@@ -0,0 +1,175 @@
+package xadrez.acervo;
+
+import java.util.Arrays;
+
+import xadrez.Bitboards;
+import xadrez.Cor;
+import xadrez.Movimento;
+import xadrez.PartidaXadrez;
+import xadrez.TabelasPosicionais;
+import xadrez.TipoPeca;
+
+// Codigo de um movimento pela sua posicao na lista de movimentos legais. A lista e ordenada do
+// mais provavel para o menos provavel pelo ganho estatico (material mais tabela peca-casa,
+// interpolados pela fase, descontando a peca que chega numa casa atacada por peao), com empate
+// decidido pelo valor do movimento; assim a ordem so depende da posicao, e nao da ordem das
+// pecas na partida. A posicao e codificada com um modelo fixo que favorece os primeiros da lista
+final class CodigoMovimentos {
+
+	// TabelasPosicionais em arrays planos, indice de bitboard * 64 + casa
+	private static final int[] MEIO_JOGO = new int[12 * 64];
+	private static final int[] FINAL = new int[12 * 64];
+	private static final Cor[] CORES = Cor.values();
+	private static final TipoPeca[] TIPOS = TipoPeca.values();
+	private static final int VAZIA = -1;
+	// Ate esta posicao o decodificador seleciona os primeiros da lista um a um; depois, conta
+	private static final int SELECAO_PARCIAL = 4;
+
+	// Frequencias acumuladas do modelo: a posicao i da lista tem frequencia proporcional a
+	// 1 / (i + 1,5), o que em partidas de teste custou cerca de 4 bits por meio-lance contra 4,6
+	// da codificacao uniforme; o total de uma lista com n movimentos e ACUMULADO[n]
+	private static final int[] ACUMULADO = new int[Movimento.MAXIMO_POR_POSICAO + 1];
+
+	static {
+		for (int indice = 0; indice < 12; indice++) {
+			System.arraycopy(TabelasPosicionais.MEIO_JOGO[indice], 0, MEIO_JOGO, indice * 64, 64);
+			System.arraycopy(TabelasPosicionais.FINAL[indice], 0, FINAL, indice * 64, 64);
+		}
+		for (int i = 0; i < Movimento.MAXIMO_POR_POSICAO; i++) {
+			ACUMULADO[i + 1] = ACUMULADO[i] + Math.max(1, 20000 / (2 * i + 3));
+		}
+	}
+
+	private final int[] movimentos = new int[Movimento.MAXIMO_POR_POSICAO];
+	private final long[] chaves = new long[Movimento.MAXIMO_POR_POSICAO];
+	private final int[] casas = new int[64];
+
+	void codifica(PartidaXadrez partida, int movimento, CodificadorFaixa codificador) {
+		int n = pontua(partida);
+		for (int i = 0; i < n; i++) {
+			if (movimentos[i] == movimento) {
+				// Com um so movimento legal nao ha o que codificar
+				if (n > 1) {
+					// A posicao na lista e quantos vem antes, sem precisar ordenar
+					int posicao = 0;
+					for (int j = 0; j < n; j++) {
+						posicao += chaves[j] < chaves[i] ? 1 : 0;
+					}
+					codificador.codifica(ACUMULADO[posicao], ACUMULADO[posicao + 1] - ACUMULADO[posicao], ACUMULADO[n]);
+				}
+				return;
+			}
+		}
+		throw new IllegalArgumentException("Movimento ilegal na posicao " + partida.toFen() + ": "
+				+ Movimento.toString(movimento));
+	}
+
+	int decodifica(PartidaXadrez partida, DecodificadorFaixa decodificador) {
+		int n = pontua(partida);
+		if (n <= 1) {
+			if (n == 0) {
+				throw new IllegalStateException("Partida do acervo continua sem movimentos legais em " + partida.toFen());
+			}
+			return movimentos[0];
+		}
+		int valor = decodificador.frequencia(ACUMULADO[n]);
+		int posicao = 0;
+		while (ACUMULADO[posicao + 1] <= valor) {
+			posicao++;
+		}
+		decodificador.decodifica(ACUMULADO[posicao], ACUMULADO[posicao + 1] - ACUMULADO[posicao]);
+		long[] chaves = this.chaves;
+		if (posicao < SELECAO_PARCIAL) {
+			// Selecao parcial ate a posicao decodificada, para as primeiras da lista
+			long chave = 0;
+			for (int i = 0; i <= posicao; i++) {
+				int menor = i;
+				chave = chaves[i];
+				for (int j = i + 1; j < n; j++) {
+					if (chaves[j] < chave) {
+						chave = chaves[j];
+						menor = j;
+					}
+				}
+				chaves[menor] = chaves[i];
+				chaves[i] = chave;
+			}
+			return (int) chave & 0xFFFF;
+		}
+		// Mais para o fim, procura a chave com exatamente posicao chaves menores, como em codifica
+		for (int i = 0;; i++) {
+			long chave = chaves[i];
+			int menores = 0;
+			for (int j = 0; j < n; j++) {
+				menores += chaves[j] < chave ? 1 : 0;
+			}
+			if (menores == posicao) {
+				return (int) chave & 0xFFFF;
+			}
+		}
+	}
+
+	// Gera os movimentos legais e da a cada um uma chave que cresce do mais provavel para o menos
+	// provavel; as chaves sao distintas, pois carregam o movimento nos 16 bits baixos
+	private int pontua(PartidaXadrez partida) {
+		int n = partida.legalMoves(movimentos);
+		if (n <= 1) {
+			return n;
+		}
+		Cor vez = partida.getVez();
+		Cor oponente = vez == Cor.BRANCO ? Cor.PRETO : Cor.BRANCO;
+		long peoesOponente = partida.getBitboard(TipoPeca.PEAO, oponente);
+		int peao = Bitboards.indice(TipoPeca.PEAO, vez) << 6;
+		int peaoOponente = Bitboards.indice(TipoPeca.PEAO, oponente) << 6;
+		// Pesos da interpolacao; o ganho nao e dividido por FASE_TOTAL, pois so a ordem importa
+		int pesoMeioJogo = Math.min(partida.getFase(), TabelasPosicionais.FASE_TOTAL);
+		int pesoFinal = TabelasPosicionais.FASE_TOTAL - pesoMeioJogo;
+		// Inicio nas tabelas planas da peca de cada casa, tirado dos bitboards: evita as chamadas
+		// virtuais das pecas
+		int[] casas = this.casas;
+		Arrays.fill(casas, VAZIA);
+		for (Cor cor : CORES) {
+			for (TipoPeca tipo : TIPOS) {
+				int inicio = Bitboards.indice(tipo, cor) << 6;
+				long b = partida.getBitboard(tipo, cor);
+				while (b != 0) {
+					casas[Long.numberOfTrailingZeros(b)] = inicio;
+					b &= b - 1;
+				}
+			}
+		}
+
+		for (int i = 0; i < n; i++) {
+			int movimento = movimentos[i];
+			int origem = Movimento.origem(movimento);
+			int destino = Movimento.destino(movimento);
+			int peca = casas[origem];
+			int saida = peca + origem;
+			int chegada = peca + destino;
+			if (Movimento.ePromocao(movimento)) {
+				chegada = (Bitboards.indice(Movimento.promocao(movimento), vez) << 6) + destino;
+			}
+			int meioJogo = MEIO_JOGO[chegada] - MEIO_JOGO[saida];
+			int finalJogo = FINAL[chegada] - FINAL[saida];
+
+			int capturada = casas[destino];
+			if (capturada != VAZIA) {
+				meioJogo += MEIO_JOGO[capturada + destino];
+				finalJogo += FINAL[capturada + destino];
+			} else if (Movimento.tipo(movimento) == Movimento.EN_PASSANT) {
+				int casa = peaoOponente + destino + (vez == Cor.BRANCO ? 8 : -8);
+				meioJogo += MEIO_JOGO[casa];
+				finalJogo += FINAL[casa];
+			}
+			if (peca != peao && (Bitboards.peao(destino, vez) & peoesOponente) != 0) {
+				meioJogo -= MEIO_JOGO[chegada];
+				finalJogo -= FINAL[chegada];
+			}
+			int ganho = meioJogo * pesoMeioJogo + finalJogo * pesoFinal;
+			// Maior ganho primeiro e, no empate, o menor movimento
+			chaves[i] = ((long) -ganho << 16) | movimento;
+		}
+		return n;
+	}
+
+}
@@ -0,0 +1,43 @@
+package xadrez.acervo;
+
+import java.nio.ByteBuffer;
+
+// Inverso de CodificadorFaixa, lendo os bytes de uma partida direto do acervo mapeado
+final class DecodificadorFaixa {
+
+	private final ByteBuffer bytes;
+	private int posicao;
+	private final int fim;
+	private long codigo;
+	private long faixa = CodificadorFaixa.MASCARA;
+
+	DecodificadorFaixa(ByteBuffer bytes, int inicio, int fim) {
+		this.bytes = bytes;
+		this.posicao = inicio;
+		this.fim = fim;
+		for (int i = 0; i < 4; i++) {
+			codigo = (codigo << 8) | le();
+		}
+	}
+
+	private int le() {
+		return posicao < fim ? bytes.get(posicao++) & 0xFF : 0;
+	}
+
+	// Primeiro passo da decodificacao de um simbolo: o valor acumulado dentro de [0, total)
+	int frequencia(int total) {
+		faixa /= total;
+		return (int) Math.min(codigo / faixa, total - 1);
+	}
+
+	// Segundo passo, com o simbolo achado pelo valor de frequencia
+	void decodifica(int acumulado, int frequencia) {
+		codigo -= acumulado * faixa;
+		faixa *= frequencia;
+		while (faixa < CodificadorFaixa.TOPO) {
+			codigo = ((codigo << 8) | le()) & CodificadorFaixa.MASCARA;
+			faixa <<= 8;
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package xadrez.acervo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import xadrez.PartidaXadrez;
+import xadrez.pgn.JogoPgn;
+
+// Grava um acervo no formato de LeitorAcervo em fluxo: cada partida e reproduzida numa
+// PartidaXadrez propria para achar a posicao de cada movimento na lista de CodigoMovimentos e
+// vai para o arquivo por um buffer direto; o indice fica na memoria e e escrito por close, que
+// tambem completa o cabecalho. Uma partida com movimento ilegal e recusada sem deixar nada gravado
+public class EscritorAcervo implements Closeable {
+
+	private final FileChannel canal;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+	private final PartidaXadrez partida = new PartidaXadrez();
+	private final CodigoMovimentos codigo = new CodigoMovimentos();
+	private final CodificadorFaixa codificador = new CodificadorFaixa();
+	private int[] historico = new int[256];
+
+	private long[] deslocamentos = new long[1 << 10];
+	private int quantidade;
+	private long posicao = LeitorAcervo.CABECALHO;
+	private long meiosLances;
+
+	public EscritorAcervo(Path arquivo) throws IOException {
+		canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		// O cabecalho e reescrito com a quantidade por close
+		buffer.putInt(LeitorAcervo.MAGICO).putInt(0).putLong(0);
+	}
+
+	// Partida lida pelo LeitorPgn: a posicao inicial vem da tag FEN e o resultado da tag ou do fim
+	// dos lances; se um lance nao pode ser aplicado, ficam os anteriores a ele
+	public void adiciona(JogoPgn jogo) throws IOException {
+		adiciona(jogo.getTag("FEN"), jogo.getMovimentos(), jogo.getQuantidade(), LeitorAcervo.resultado(jogo.getResultado()));
+	}
+
+	// Historico da partida (ver PartidaXadrez.getHistorico) a partir de fen, ou da posicao padrao se null
+	public void adiciona(PartidaXadrez jogada, String fen, int resultado) throws IOException {
+		int n = jogada.getHistorico(historico);
+		if (n > historico.length) {
+			historico = new int[n];
+			jogada.getHistorico(historico);
+		}
+		adiciona(fen, historico, n, resultado);
+	}
+
+	// Movimentos 0 a n - 1 (ver Movimento) a partir de fen, ou da posicao padrao se null
+	public void adiciona(String fen, int[] movimentos, int n, int resultado) throws IOException {
+		byte[] textoFen = null;
+		if (fen != null) {
+			textoFen = fen.trim().getBytes(StandardCharsets.US_ASCII);
+			if (textoFen.length > 0xFF) {
+				throw new IllegalArgumentException("FEN longo demais para o acervo: " + fen);
+			}
+			partida.reinicia(fen);
+		} else {
+			partida.reinicia();
+		}
+		codificador.reinicia();
+		for (int i = 0; i < n; i++) {
+			codigo.codifica(partida, movimentos[i], codificador);
+			partida.makeMove(movimentos[i]);
+		}
+		int tamanhoCodigo = codificador.finaliza();
+
+		int tamanho = 1 + (textoFen == null ? 0 : 1 + textoFen.length) + LeitorAcervo.tamanhoQuantidade(n) + tamanhoCodigo;
+		if (posicao + tamanho + (quantidade + 2) * 8L > LeitorAcervo.MAXIMO_BYTES) {
+			throw new IOException("Acervo cheio com " + quantidade + " partidas");
+		}
+		if (quantidade == deslocamentos.length) {
+			deslocamentos = Arrays.copyOf(deslocamentos, quantidade * 2);
+		}
+		deslocamentos[quantidade++] = posicao;
+		posicao += tamanho;
+		meiosLances += n;
+
+		escreveByte((resultado & 3) | (textoFen == null ? 0 : LeitorAcervo.COM_FEN));
+		if (textoFen != null) {
+			escreveByte(textoFen.length);
+			escreve(textoFen, 0, textoFen.length);
+		}
+		int valor = n;
+		while (valor >= 0x80) {
+			escreveByte((valor & 0x7F) | 0x80);
+			valor >>>= 7;
+		}
+		escreveByte(valor);
+		escreve(codificador.getBytes(), 1, tamanhoCodigo);
+	}
+
+	public int getQuantidade() {
+		return quantidade;
+	}
+
+	public long getMeiosLances() {
+		return meiosLances;
+	}
+
+	// Bytes gravados ate agora, sem o indice
+	public long getTamanho() {
+		return posicao;
+	}
+
+	private void escreveByte(int b) throws IOException {
+		if (!buffer.hasRemaining()) {
+			descarrega();
+		}
+		buffer.put((byte) b);
+	}
+
+	private void escreve(byte[] bytes, int inicio, int tamanho) throws IOException {
+		while (tamanho > 0) {
+			if (!buffer.hasRemaining()) {
+				descarrega();
+			}
+			int parte = Math.min(tamanho, buffer.remaining());
+			buffer.put(bytes, inicio, parte);
+			inicio += parte;
+			tamanho -= parte;
+		}
+	}
+
+	private void descarrega() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			canal.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			for (int i = 0; i <= quantidade; i++) {
+				if (buffer.remaining() < 8) {
+					descarrega();
+				}
+				buffer.putLong(i < quantidade ? deslocamentos[i] : posicao);
+			}
+			descarrega();
+			buffer.putInt(LeitorAcervo.MAGICO).putInt(0).putLong(quantidade).flip();
+			while (buffer.hasRemaining()) {
+				canal.write(buffer, buffer.position());
+			}
+		} finally {
+			canal.close();
+		}
+	}
+
+}
@@ -0,0 +1,167 @@
+package xadrez.acervo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import xadrez.PartidaXadrez;
+
+// Acervo de partidas mapeado em memoria. O arquivo tem um cabecalho de 16 bytes (magico, 0 e a
+// quantidade de partidas), as partidas e, no fim, o indice: o deslocamento de cada partida no
+// arquivo (8 bytes) mais o do proprio indice, que marca o fim da ultima. Cada partida tem um byte
+// de resultado (e COM_FEN), o FEN inicial se houver (tamanho em 1 byte e os caracteres), a
+// quantidade de meios-lances em base 128 e os movimentos em CodificadorFaixa, cada um pela
+// sua posicao na lista de CodigoMovimentos. Ler uma partida e reproduzi-la na PartidaXadrez.
+// Somente leitura, pode ser lido de varias threads
+public class LeitorAcervo {
+
+	public static final String EXTENSAO = ".xac";
+
+	public static final int RESULTADO_DESCONHECIDO = 0;
+	public static final int VITORIA_BRANCAS = 1;
+	public static final int VITORIA_PRETAS = 2;
+	public static final int EMPATE = 3;
+
+	private static final String[] RESULTADOS = { "*", "1-0", "0-1", "1/2-1/2" };
+
+	static final int MAGICO = 0x58414331; // "XAC1"
+	static final int CABECALHO = 16;
+	static final int COM_FEN = 4;
+	// Um mapeamento vai ate 2 GB
+	static final long MAXIMO_BYTES = Integer.MAX_VALUE;
+
+	private final ByteBuffer mapa;
+	private final int quantidade;
+	private final int indice;
+
+	private LeitorAcervo(ByteBuffer mapa, int quantidade, int indice) {
+		this.mapa = mapa;
+		this.quantidade = quantidade;
+		this.indice = indice;
+	}
+
+	public static LeitorAcervo abre(Path arquivo) throws IOException {
+		try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+			long tamanho = canal.size();
+			if (tamanho < CABECALHO + 8 || tamanho > MAXIMO_BYTES) {
+				throw new IOException("Tamanho invalido para um acervo de partidas: " + arquivo);
+			}
+			ByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanho).order(ByteOrder.LITTLE_ENDIAN);
+			long quantidade = mapa.getLong(8);
+			long indice = tamanho - (quantidade + 1) * 8;
+			if (mapa.getInt(0) != MAGICO || quantidade < 0 || indice < CABECALHO
+					|| mapa.getLong((int) (tamanho - 8)) != indice) {
+				throw new IOException("Arquivo nao e um acervo de partidas: " + arquivo);
+			}
+			return new LeitorAcervo(mapa, (int) quantidade, (int) indice);
+		}
+	}
+
+	public int getQuantidade() {
+		return quantidade;
+	}
+
+	public int getResultado(int partida) {
+		return mapa.get(inicio(partida)) & 3;
+	}
+
+	// FEN da posicao inicial, ou null se a partida comeca da posicao padrao
+	public String getFen(int partida) {
+		int p = inicio(partida);
+		if ((mapa.get(p) & COM_FEN) == 0) {
+			return null;
+		}
+		byte[] fen = new byte[mapa.get(p + 1) & 0xFF];
+		for (int i = 0; i < fen.length; i++) {
+			fen[i] = mapa.get(p + 2 + i);
+		}
+		return new String(fen, StandardCharsets.US_ASCII);
+	}
+
+	public int getQuantidadeMovimentos(int partida) {
+		return leQuantidade(inicioQuantidade(partida));
+	}
+
+	// Bytes ocupados pela partida, sem contar o indice
+	public int getTamanho(int partida) {
+		return fim(partida) - inicio(partida);
+	}
+
+	// Coloca a partida na posicao inicial, aplica os movimentos e os copia em movimentos (ate o
+	// tamanho do array, que pode ser null); devolve quantos sao
+	public int le(int partida, PartidaXadrez destino, int[] movimentos) {
+		String fen = getFen(partida);
+		if (fen != null) {
+			destino.reinicia(fen);
+		} else {
+			destino.reinicia();
+		}
+		int p = inicioQuantidade(partida);
+		int n = leQuantidade(p);
+		DecodificadorFaixa decodificador = new DecodificadorFaixa(mapa, p + tamanhoQuantidade(n), fim(partida));
+		CodigoMovimentos codigo = new CodigoMovimentos();
+		for (int i = 0; i < n; i++) {
+			int movimento = codigo.decodifica(destino, decodificador);
+			if (movimentos != null && i < movimentos.length) {
+				movimentos[i] = movimento;
+			}
+			destino.makeMove(movimento);
+		}
+		return n;
+	}
+
+	private int inicio(int partida) {
+		if (partida < 0 || partida >= quantidade) {
+			throw new IndexOutOfBoundsException("Partida " + partida + " fora do acervo de " + quantidade);
+		}
+		return (int) mapa.getLong(indice + partida * 8);
+	}
+
+	// A partida termina onde comeca a seguinte; a ultima, no indice
+	private int fim(int partida) {
+		return (int) mapa.getLong(indice + (partida + 1) * 8);
+	}
+
+	private int inicioQuantidade(int partida) {
+		int p = inicio(partida);
+		return (mapa.get(p) & COM_FEN) == 0 ? p + 1 : p + 2 + (mapa.get(p + 1) & 0xFF);
+	}
+
+	// Inteiro em base 128, sete bits por byte com o bit alto marcando que ha mais
+	private int leQuantidade(int p) {
+		int valor = 0;
+		for (int deslocamento = 0;; deslocamento += 7) {
+			int b = mapa.get(p++);
+			valor |= (b & 0x7F) << deslocamento;
+			if (b >= 0) {
+				return valor;
+			}
+		}
+	}
+
+	static int tamanhoQuantidade(int valor) {
+		int tamanho = 1;
+		while ((valor >>>= 7) != 0) {
+			tamanho++;
+		}
+		return tamanho;
+	}
+
+	public static int resultado(String texto) {
+		for (int i = 1; i < RESULTADOS.length; i++) {
+			if (RESULTADOS[i].equals(texto)) {
+				return i;
+			}
+		}
+		return RESULTADO_DESCONHECIDO;
+	}
+
+	public static String texto(int resultado) {
+		return RESULTADOS[resultado];
+	}
+
+}
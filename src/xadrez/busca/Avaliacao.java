@@ -0,0 +1,22 @@
+package xadrez.busca;
+
+import xadrez.Cor;
+import xadrez.PartidaXadrez;
+
+// Avaliacao estatica em centipeoes, do ponto de vista do jogador atual. O material e as tabelas
+// peca-casa sao mantidos incrementalmente pela PartidaXadrez (ver TabelasPosicionais)
+public final class Avaliacao {
+
+	// Valores indexados por TipoPeca.ordinal(), usados na ordenacao MVV-LVA:
+	// peao, cavalo, bispo, torre, rainha, rei
+	public static final int[] VALOR = { 100, 320, 330, 500, 900, 0 };
+
+	private Avaliacao() {
+	}
+
+	public static int avalia(PartidaXadrez partida) {
+		int avaliacao = partida.getAvaliacao();
+		return partida.getVez() == Cor.BRANCO ? avaliacao : -avaliacao;
+	}
+
+}
@@ -0,0 +1,408 @@
+package xadrez.busca;
+
+import java.util.Arrays;
+
+import xadrez.Movimento;
+import xadrez.PartidaXadrez;
+import xadrez.PecaXadrez;
+
+// Busca alfa-beta com aprofundamento iterativo e janela nula (PVS), quiescencia nas capturas
+// e ordenacao por MVV-LVA, movimentos assassinos e historico. Uma instancia por thread:
+// os buffers de cada ply sao alocados uma vez e reaproveitados entre buscas
+public class Busca {
+
+	public static final int MATE = 30000;
+	public static final int INFINITO = 32000;
+	public static final int PROFUNDIDADE_MAXIMA = 64;
+
+	private static final int NENHUM = 0;
+	private static final int PLY_MAXIMO = 128;
+	private static final int NOS_ENTRE_VERIFICACOES = 2048;
+
+	private static final int TAMANHO_TABELA_MB = 16;
+
+	private static final int ORDEM_PV = 2_000_000;
+	private static final int ORDEM_CAPTURA = 1_000_000;
+	private static final int ORDEM_ASSASSINO = 900_000;
+
+	private final int[][] movimentos = new int[PLY_MAXIMO][Movimento.MAXIMO_POR_POSICAO];
+	private final int[][] ordens = new int[PLY_MAXIMO][Movimento.MAXIMO_POR_POSICAO];
+	private final int[][] assassinos = new int[PLY_MAXIMO][2];
+	private final int[][][] historico = new int[2][64][64];
+
+	// Variacao principal triangular: pv[ply] guarda a melhor continuacao a partir do ply.
+	// A da iteracao anterior e seguida primeiro enquanto a busca desce pelo seu caminho
+	private final int[][] pv = new int[PLY_MAXIMO][PLY_MAXIMO];
+	private final int[] tamanhoPv = new int[PLY_MAXIMO];
+	private final int[] pvAnterior = new int[PLY_MAXIMO];
+	private int tamanhoPvAnterior;
+	private boolean seguePv;
+
+	private final TabelaTransposicao tabela;
+	private PartidaXadrez partida;
+	private long nos;
+	private long limite;
+	private volatile boolean parar;
+	private boolean interrompida;
+
+	// Preenchidos por BuscaParalela: a geracao da tabela e avancada uma vez para todas as threads,
+	// e as auxiliares de numero impar comecam um ply adiante para desencontrar das demais
+	boolean tabelaCompartilhada;
+	int numeroThread;
+	BuscaParalela coordenador;
+
+	private int melhorMovimento;
+	private int pontuacao;
+	private int profundidade;
+	private long nanos;
+
+	public Busca() {
+		this(new TabelaTransposicao(TAMANHO_TABELA_MB));
+	}
+
+	// A tabela pode ser compartilhada entre varias buscas, inclusive em threads diferentes
+	public Busca(TabelaTransposicao tabela) {
+		this.tabela = tabela;
+	}
+
+	public TabelaTransposicao getTabela() {
+		return tabela;
+	}
+
+	// Procura o melhor movimento do jogador atual em ate tempoMillis milissegundos ou ate a
+	// profundidade pedida; a posicao volta ao estado original no fim. Retorna o movimento
+	// codificado (ver Movimento) da ultima iteracao completa, ou 0 se nao houver movimento legal
+	public int procura(PartidaXadrez partida, long tempoMillis, int profundidadeMaxima) {
+		this.partida = partida;
+		long inicio = System.nanoTime();
+		limite = tempoMillis > 0 ? inicio + tempoMillis * 1_000_000L : Long.MAX_VALUE;
+		nos = 0;
+		parar = false;
+		interrompida = false;
+		melhorMovimento = NENHUM;
+		pontuacao = 0;
+		profundidade = 0;
+		for (int[] a : assassinos) {
+			a[0] = NENHUM;
+			a[1] = NENHUM;
+		}
+		for (int[][] porCor : historico) {
+			for (int[] porOrigem : porCor) {
+				Arrays.fill(porOrigem, 0);
+			}
+		}
+		tamanhoPv[0] = 0;
+		tamanhoPvAnterior = 0;
+		if (!tabelaCompartilhada) {
+			tabela.novaBusca();
+		}
+
+		int maxima = Math.min(Math.max(profundidadeMaxima, 1), PROFUNDIDADE_MAXIMA);
+		for (int p = 1 + (numeroThread & 1); p <= maxima; p++) {
+			seguePv = true;
+			int valor = alfaBeta(-INFINITO, INFINITO, p, 0);
+			if (interrompida || tamanhoPv[0] == 0) {
+				break;
+			}
+			pontuacao = valor;
+			profundidade = p;
+			melhorMovimento = pv[0][0];
+			tamanhoPvAnterior = tamanhoPv[0];
+			System.arraycopy(pv[0], 0, pvAnterior, 0, tamanhoPvAnterior);
+			if (Math.abs(valor) >= MATE - PLY_MAXIMO) {
+				break;
+			}
+		}
+		// Interrompida antes de completar a primeira iteracao: qualquer movimento legal
+		if (melhorMovimento == NENHUM && partida.legalMoves(movimentos[0]) > 0) {
+			melhorMovimento = movimentos[0][0];
+		}
+		nanos = System.nanoTime() - inicio;
+		return melhorMovimento;
+	}
+
+	// Interrompe a busca em andamento; seguro de chamar de outra thread
+	public void para() {
+		parar = true;
+	}
+
+	public int getMelhorMovimento() {
+		return melhorMovimento;
+	}
+
+	// Pontuacao da ultima iteracao completa em centipeoes para o jogador atual;
+	// valores proximos de MATE indicam mate em (MATE - |pontuacao|) meios-lances
+	public int getPontuacao() {
+		return pontuacao;
+	}
+
+	public int getProfundidade() {
+		return profundidade;
+	}
+
+	public long getNos() {
+		return nos;
+	}
+
+	public long getNosPorSegundo() {
+		return nanos > 0 ? nos * 1_000_000_000L / nanos : 0;
+	}
+
+	public int[] getVariacaoPrincipal() {
+		return Arrays.copyOf(pvAnterior, tamanhoPvAnterior);
+	}
+
+	private int alfaBeta(int alfa, int beta, int profundidade, int ply) {
+		tamanhoPv[ply] = 0;
+		if (profundidade <= 0 || ply >= PLY_MAXIMO - 1) {
+			return quiescencia(alfa, beta, ply);
+		}
+		if (verificaInterrupcao()) {
+			return 0;
+		}
+		nos++;
+		if (ply > 0 && (partida.getRelogioMeiosLances() >= 100 || partida.repeticao())) {
+			return 0;
+		}
+
+		// Fora da variacao principal um resultado guardado com profundidade suficiente encerra o no
+		long chave = partida.getChave();
+		long dados = tabela.consulta(chave);
+		int movimentoTabela = TabelaTransposicao.movimento(dados);
+		if (dados != 0 && ply > 0 && beta - alfa == 1 && TabelaTransposicao.profundidade(dados) >= profundidade) {
+			int valor = deTabela(TabelaTransposicao.pontuacao(dados), ply);
+			int limite = TabelaTransposicao.limite(dados);
+			if (limite == TabelaTransposicao.EXATO || (limite == TabelaTransposicao.INFERIOR && valor >= beta)
+					|| (limite == TabelaTransposicao.SUPERIOR && valor <= alfa)) {
+				return valor;
+			}
+		}
+
+		int[] lista = movimentos[ply];
+		int n = partida.legalMoves(lista);
+		if (n == 0) {
+			return partida.getXeque() ? -MATE + ply : 0;
+		}
+		// Estender o xeque evita que a busca pare no meio de uma sequencia forcada
+		if (partida.getXeque()) {
+			profundidade++;
+		}
+		int primeiroMovimento = seguePv && ply < tamanhoPvAnterior ? pvAnterior[ply] : movimentoTabela;
+		ordena(lista, ordens[ply], n, ply, primeiroMovimento);
+
+		int alfaOriginal = alfa;
+		int melhorLocal = NENHUM;
+		boolean primeiro = true;
+		int melhor = -INFINITO;
+		for (int i = 0; i < n; i++) {
+			int movimento = proximo(lista, ordens[ply], i, n);
+			boolean quieto = eQuieto(movimento);
+			partida.makeMove(movimento);
+			int valor;
+			if (primeiro) {
+				valor = -alfaBeta(-beta, -alfa, profundidade - 1, ply + 1);
+			} else {
+				valor = -alfaBeta(-alfa - 1, -alfa, profundidade - 1, ply + 1);
+				if (valor > alfa && valor < beta) {
+					valor = -alfaBeta(-beta, -alfa, profundidade - 1, ply + 1);
+				}
+			}
+			partida.unmakeMove();
+			if (interrompida) {
+				return 0;
+			}
+			primeiro = false;
+			seguePv = false;
+
+			if (valor > melhor) {
+				melhor = valor;
+				melhorLocal = movimento;
+				if (valor > alfa) {
+					alfa = valor;
+					atualizaPv(ply, movimento);
+					if (alfa >= beta) {
+						if (quieto) {
+							registraCorte(movimento, profundidade, ply);
+						}
+						break;
+					}
+				}
+			}
+		}
+
+		int limite = melhor >= beta ? TabelaTransposicao.INFERIOR
+				: melhor > alfaOriginal ? TabelaTransposicao.EXATO : TabelaTransposicao.SUPERIOR;
+		tabela.grava(chave, limite == TabelaTransposicao.SUPERIOR ? NENHUM : melhorLocal, paraTabela(melhor, ply),
+				profundidade, limite);
+		return melhor;
+	}
+
+	// Pontuacoes de mate sao guardadas relativas ao no, e nao a raiz, para valerem em qualquer ply
+	private static int paraTabela(int valor, int ply) {
+		if (valor >= MATE - PLY_MAXIMO) {
+			return valor + ply;
+		}
+		if (valor <= -MATE + PLY_MAXIMO) {
+			return valor - ply;
+		}
+		return valor;
+	}
+
+	private static int deTabela(int valor, int ply) {
+		if (valor >= MATE - PLY_MAXIMO) {
+			return valor - ply;
+		}
+		if (valor <= -MATE + PLY_MAXIMO) {
+			return valor + ply;
+		}
+		return valor;
+	}
+
+	private int quiescencia(int alfa, int beta, int ply) {
+		tamanhoPv[ply] = 0;
+		if (verificaInterrupcao()) {
+			return 0;
+		}
+		nos++;
+		// No limite das tabelas por ply fica a avaliacao estatica, mesmo em xeque
+		if (ply >= PLY_MAXIMO - 1) {
+			return Avaliacao.avalia(partida);
+		}
+		boolean xeque = partida.getXeque();
+		int melhor = -INFINITO;
+		if (!xeque) {
+			melhor = Avaliacao.avalia(partida);
+			if (melhor >= beta) {
+				return melhor;
+			}
+			if (melhor > alfa) {
+				alfa = melhor;
+			}
+		}
+
+		int[] lista = movimentos[ply];
+		int n = partida.legalMoves(lista);
+		if (n == 0) {
+			return xeque ? -MATE + ply : 0;
+		}
+		// Fora do xeque so capturas e promocoes; em xeque todas as evasoes
+		if (!xeque) {
+			int taticos = 0;
+			for (int i = 0; i < n; i++) {
+				if (!eQuieto(lista[i])) {
+					lista[taticos++] = lista[i];
+				}
+			}
+			n = taticos;
+		}
+		ordena(lista, ordens[ply], n, ply, NENHUM);
+
+		for (int i = 0; i < n; i++) {
+			int movimento = proximo(lista, ordens[ply], i, n);
+			partida.makeMove(movimento);
+			int valor = -quiescencia(-beta, -alfa, ply + 1);
+			partida.unmakeMove();
+			if (interrompida) {
+				return 0;
+			}
+			if (valor > melhor) {
+				melhor = valor;
+				if (valor > alfa) {
+					alfa = valor;
+					if (alfa >= beta) {
+						break;
+					}
+				}
+			}
+		}
+		return melhor;
+	}
+
+	private boolean verificaInterrupcao() {
+		if (interrompida) {
+			return true;
+		}
+		if ((nos & (NOS_ENTRE_VERIFICACOES - 1)) == 0
+				&& (parar || System.nanoTime() > limite || (coordenador != null && coordenador.encerrada))) {
+			interrompida = true;
+		}
+		return interrompida;
+	}
+
+	private void ordena(int[] lista, int[] ordem, int n, int ply, int primeiro) {
+		int cor = partida.getVez().ordinal();
+		for (int i = 0; i < n; i++) {
+			int movimento = lista[i];
+			int origem = Movimento.origem(movimento);
+			int destino = Movimento.destino(movimento);
+			if (movimento == primeiro) {
+				ordem[i] = ORDEM_PV;
+			} else if (!eQuieto(movimento)) {
+				ordem[i] = ORDEM_CAPTURA + mvvLva(movimento);
+			} else if (movimento == assassinos[ply][0] || movimento == assassinos[ply][1]) {
+				ordem[i] = ORDEM_ASSASSINO + (movimento == assassinos[ply][0] ? 1 : 0);
+			} else {
+				ordem[i] = historico[cor][origem][destino];
+			}
+		}
+	}
+
+	// Selecao parcial: so ordena ate onde a busca chega antes do corte
+	private static int proximo(int[] lista, int[] ordem, int i, int n) {
+		int melhor = i;
+		for (int j = i + 1; j < n; j++) {
+			if (ordem[j] > ordem[melhor]) {
+				melhor = j;
+			}
+		}
+		if (melhor != i) {
+			int m = lista[i];
+			lista[i] = lista[melhor];
+			lista[melhor] = m;
+			int o = ordem[i];
+			ordem[i] = ordem[melhor];
+			ordem[melhor] = o;
+		}
+		return lista[i];
+	}
+
+	// Vitima mais valiosa primeiro, e entre as mesmas vitimas o atacante menos valioso
+	private int mvvLva(int movimento) {
+		PecaXadrez vitima = partida.getPeca(Movimento.destino(movimento));
+		int valorVitima = vitima == null ? Avaliacao.VALOR[0] : Avaliacao.VALOR[vitima.getTipo().ordinal()];
+		if (Movimento.ePromocao(movimento)) {
+			valorVitima += Avaliacao.VALOR[Movimento.promocao(movimento).ordinal()];
+		}
+		PecaXadrez atacante = partida.getPeca(Movimento.origem(movimento));
+		return valorVitima * 8 - atacante.getTipo().ordinal();
+	}
+
+	private boolean eQuieto(int movimento) {
+		int tipo = Movimento.tipo(movimento);
+		return tipo != Movimento.EN_PASSANT && !Movimento.ePromocao(movimento)
+				&& partida.getPeca(Movimento.destino(movimento)) == null;
+	}
+
+	private void registraCorte(int movimento, int profundidade, int ply) {
+		if (assassinos[ply][0] != movimento) {
+			assassinos[ply][1] = assassinos[ply][0];
+			assassinos[ply][0] = movimento;
+		}
+		int[] linha = historico[partida.getVez().ordinal()][Movimento.origem(movimento)];
+		linha[Movimento.destino(movimento)] += profundidade * profundidade;
+		if (linha[Movimento.destino(movimento)] >= ORDEM_ASSASSINO) {
+			for (int[] porOrigem : historico[partida.getVez().ordinal()]) {
+				for (int d = 0; d < 64; d++) {
+					porOrigem[d] >>= 1;
+				}
+			}
+		}
+	}
+
+	private void atualizaPv(int ply, int movimento) {
+		pv[ply][0] = movimento;
+		System.arraycopy(pv[ply + 1], 0, pv[ply], 1, tamanhoPv[ply + 1]);
+		tamanhoPv[ply] = tamanhoPv[ply + 1] + 1;
+	}
+
+}
@@ -0,0 +1,130 @@
+package xadrez.busca;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import xadrez.EstadoPartida;
+import xadrez.PartidaXadrez;
+
+// Lazy SMP: todas as threads procuram a mesma raiz, cada uma com sua copia da posicao e sua
+// propria Busca, e so se comunicam pela tabela de transposicao compartilhada. A thread 0 usa
+// a partida recebida e decide o movimento; quando ela termina, as auxiliares sao interrompidas
+public class BuscaParalela implements AutoCloseable {
+
+	private final TabelaTransposicao tabela;
+	private final Busca[] buscas;
+	// Copias das auxiliares, reaproveitadas: cada busca so restaura a fotografia da raiz
+	private final PartidaXadrez[] copias;
+	private final ExecutorService executor;
+
+	// Sinal para as auxiliares, inclusive as que ainda nao comecaram quando a thread 0 termina
+	volatile boolean encerrada;
+
+	private long nos;
+	private long nanos;
+
+	public BuscaParalela(int threads, int megabytesTabela) {
+		this(threads, new TabelaTransposicao(megabytesTabela));
+	}
+
+	public BuscaParalela(int threads, TabelaTransposicao tabela) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("E necessario pelo menos 1 thread");
+		}
+		this.tabela = tabela;
+		buscas = new Busca[threads];
+		copias = new PartidaXadrez[threads];
+		for (int i = 0; i < threads; i++) {
+			buscas[i] = new Busca(tabela);
+			buscas[i].tabelaCompartilhada = true;
+			buscas[i].numeroThread = i;
+			buscas[i].coordenador = this;
+		}
+		executor = Executors.newFixedThreadPool(Math.max(threads - 1, 1), r -> {
+			Thread t = new Thread(r, "busca-auxiliar");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	public int getThreads() {
+		return buscas.length;
+	}
+
+	public TabelaTransposicao getTabela() {
+		return tabela;
+	}
+
+	// Mesmo contrato de Busca.procura; o movimento, a pontuacao e a variacao principal sao os da thread 0
+	public int procura(PartidaXadrez partida, long tempoMillis, int profundidadeMaxima) {
+		long inicio = System.nanoTime();
+		tabela.novaBusca();
+		encerrada = false;
+		EstadoPartida raiz = partida.getEstado();
+		Future<?>[] auxiliares = new Future<?>[buscas.length - 1];
+		for (int i = 1; i < buscas.length; i++) {
+			Busca busca = buscas[i];
+			if (copias[i] == null) {
+				copias[i] = new PartidaXadrez(raiz);
+			} else {
+				copias[i].restauraEstado(raiz);
+			}
+			PartidaXadrez copia = copias[i];
+			auxiliares[i - 1] = executor.submit(() -> busca.procura(copia, tempoMillis, profundidadeMaxima));
+		}
+
+		int movimento = buscas[0].procura(partida, tempoMillis, profundidadeMaxima);
+
+		encerrada = true;
+		nos = buscas[0].getNos();
+		for (int i = 0; i < auxiliares.length; i++) {
+			try {
+				auxiliares[i].get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Falha em uma thread da busca", e.getCause());
+			}
+			nos += buscas[i + 1].getNos();
+		}
+		nanos = System.nanoTime() - inicio;
+		return movimento;
+	}
+
+	public void para() {
+		buscas[0].para();
+	}
+
+	public int getMelhorMovimento() {
+		return buscas[0].getMelhorMovimento();
+	}
+
+	public int getPontuacao() {
+		return buscas[0].getPontuacao();
+	}
+
+	public int getProfundidade() {
+		return buscas[0].getProfundidade();
+	}
+
+	public int[] getVariacaoPrincipal() {
+		return buscas[0].getVariacaoPrincipal();
+	}
+
+	// Soma dos nos de todas as threads
+	public long getNos() {
+		return nos;
+	}
+
+	public long getNosPorSegundo() {
+		return nanos > 0 ? nos * 1_000_000_000L / nanos : 0;
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+}
@@ -0,0 +1,155 @@
+package xadrez.busca;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+// Tabela de transposicao de tamanho fixo em um long[], compartilhavel entre threads sem travas.
+// Cada entrada ocupa dois longs: a chave XOR os dados e os dados. Uma escrita concorrente que
+// misture metades de entradas diferentes nao passa na verificacao da chave e vira uma falha
+// de consulta, nunca um resultado errado.
+//
+// Dados: movimento (bits 0-15), pontuacao (16-31, com sinal), profundidade (32-39),
+// limite (40-41) e geracao (42-47)
+public class TabelaTransposicao {
+
+	public static final int NENHUM = 0;
+	public static final int EXATO = 1;
+	public static final int INFERIOR = 2;
+	public static final int SUPERIOR = 3;
+
+	// Dois slots por balde: o primeiro prefere profundidade, o segundo e sempre substituido
+	private static final int LONGS_POR_BALDE = 4;
+	private static final int BYTES_POR_BALDE = LONGS_POR_BALDE * Long.BYTES;
+
+	private final long[] entradas;
+	private final int mascara;
+	private int geracao;
+
+	private final LongAdder consultas = new LongAdder();
+	private final LongAdder acertos = new LongAdder();
+	private final LongAdder gravacoes = new LongAdder();
+
+	public TabelaTransposicao(int megabytes) {
+		if (megabytes < 1) {
+			throw new IllegalArgumentException("A tabela precisa de pelo menos 1 MB");
+		}
+		long baldes = Long.highestOneBit((long) megabytes * 1024 * 1024 / BYTES_POR_BALDE);
+		if (baldes * LONGS_POR_BALDE > Integer.MAX_VALUE - 8) {
+			baldes = Integer.highestOneBit((Integer.MAX_VALUE - 8) / LONGS_POR_BALDE);
+		}
+		entradas = new long[(int) baldes * LONGS_POR_BALDE];
+		mascara = (int) baldes - 1;
+	}
+
+	public int getMegabytes() {
+		return (int) ((long) entradas.length * Long.BYTES / (1024 * 1024));
+	}
+
+	// Marca o inicio de uma nova busca: entradas de buscas anteriores passam a ser substituidas primeiro
+	public void novaBusca() {
+		geracao = (geracao + 1) & 0x3F;
+	}
+
+	public void limpa() {
+		Arrays.fill(entradas, 0L);
+		geracao = 0;
+		consultas.reset();
+		acertos.reset();
+		gravacoes.reset();
+	}
+
+	// Retorna os dados empacotados da posicao, ou 0 se ela nao estiver na tabela
+	public long consulta(long chave) {
+		consultas.increment();
+		int i = indice(chave);
+		for (int slot = 0; slot < LONGS_POR_BALDE; slot += 2) {
+			long dados = entradas[i + slot + 1];
+			if ((entradas[i + slot] ^ dados) == chave && dados != 0) {
+				acertos.increment();
+				return dados;
+			}
+		}
+		return 0L;
+	}
+
+	public void grava(long chave, int movimento, int pontuacao, int profundidade, int limite) {
+		int i = indice(chave);
+		long dados0 = entradas[i + 1];
+		boolean mesma0 = (entradas[i] ^ dados0) == chave;
+		// Sem movimento novo, preserva o que ja estava guardado para a mesma posicao
+		if (movimento == NENHUM && mesma0) {
+			movimento = movimento(dados0);
+		}
+		long dados = empacota(movimento, pontuacao, profundidade, limite);
+		if (mesma0 || dados0 == 0 || geracao(dados0) != geracao || profundidade >= profundidade(dados0)) {
+			entradas[i] = chave ^ dados;
+			entradas[i + 1] = dados;
+		} else {
+			entradas[i + 2] = chave ^ dados;
+			entradas[i + 3] = dados;
+		}
+		gravacoes.increment();
+	}
+
+	public static int movimento(long dados) {
+		return (int) (dados & 0xFFFF);
+	}
+
+	public static int pontuacao(long dados) {
+		return (short) (dados >>> 16);
+	}
+
+	public static int profundidade(long dados) {
+		return (int) ((dados >>> 32) & 0xFF);
+	}
+
+	public static int limite(long dados) {
+		return (int) ((dados >>> 40) & 0x3);
+	}
+
+	public long getConsultas() {
+		return consultas.sum();
+	}
+
+	public long getAcertos() {
+		return acertos.sum();
+	}
+
+	public long getGravacoes() {
+		return gravacoes.sum();
+	}
+
+	public double getTaxaAcerto() {
+		long c = consultas.sum();
+		return c == 0 ? 0.0 : (double) acertos.sum() / c;
+	}
+
+	// Permilagem de slots ocupados pela busca atual, por amostragem dos primeiros 1000 baldes
+	public int getOcupacaoPermil() {
+		int baldes = Math.min(1000, mascara + 1);
+		int usados = 0;
+		for (int b = 0; b < baldes; b++) {
+			for (int slot = 0; slot < LONGS_POR_BALDE; slot += 2) {
+				long dados = entradas[b * LONGS_POR_BALDE + slot + 1];
+				if (dados != 0 && geracao(dados) == geracao) {
+					usados++;
+				}
+			}
+		}
+		return usados * 1000 / (baldes * (LONGS_POR_BALDE / 2));
+	}
+
+	private int indice(long chave) {
+		return ((int) (chave >>> 32) & mascara) * LONGS_POR_BALDE;
+	}
+
+	private long empacota(int movimento, int pontuacao, int profundidade, int limite) {
+		return (movimento & 0xFFFFL) | ((pontuacao & 0xFFFFL) << 16) | ((long) (profundidade & 0xFF) << 32)
+				| ((long) (limite & 0x3) << 40) | ((long) geracao << 42);
+	}
+
+	private static int geracao(long dados) {
+		return (int) ((dados >>> 42) & 0x3F);
+	}
+
+}
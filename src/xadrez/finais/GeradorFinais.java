@@ -0,0 +1,475 @@
+package xadrez.finais;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import xadrez.Bitboards;
+import xadrez.Cor;
+import xadrez.TipoPeca;
+
+// Gera tabelas de finais por analise retrograda. Primeiro cada posicao e examinada para a frente
+// uma vez: legalidade, mate ou afogamento, quantos movimentos ficam no mesmo material e o valor
+// das capturas e promocoes, que saem para tabelas menores ja geradas. Depois, nivel a nivel de
+// distancia ate o mate, as posicoes resolvidas desfazem movimentos: quem chega a uma derrota
+// ganha no nivel seguinte, e quem ve todos os seus movimentos levarem a vitorias do oponente
+// perde. Cada passo percorre as posicoes em blocos num ForkJoinPool; os contadores de movimentos
+// sao decrementados atomicamente e o resto so escreve valores que qualquer thread escreveria igual.
+//
+// As regras sao as de xadrez.pecas sem roque e sem en passant, e o mate e contado sem a regra
+// dos cinquenta lances. Sem simetria: cada tabela guarda 64 elevado ao numero de pecas posicoes
+// por lado, e a geracao usa tres bytes por posicao (cerca de 100 MB com quatro pecas, 6 GB com cinco)
+public class GeradorFinais {
+
+	// Posicoes examinadas por uma tarefa antes de deixar de dividir o trabalho
+	private static final int POSICOES_POR_TAREFA = 1 << 14;
+
+	// Valores de trabalho: distancia d fica como d + 1, como no arquivo
+	private static final int NAO_RESOLVIDA = 0;
+	private static final int AFOGADO = 254;
+	private static final int DISTANCIA_MAXIMA = 252;
+
+	private static final int INICIO = 0;
+	private static final int AGENDA = 1;
+	private static final int PROPAGA = 2;
+	private static final int FINAL = 3;
+
+	private static final VarHandle CONTADOR = MethodHandles.arrayElementVarHandle(byte[].class);
+
+	private static final int PEAO = TipoPeca.PEAO.ordinal();
+	private static final int CAVALO = TipoPeca.CAVALO.ordinal();
+	private static final int BISPO = TipoPeca.BISPO.ordinal();
+	private static final int TORRE = TipoPeca.TORRE.ordinal();
+	private static final int RAINHA = TipoPeca.RAINHA.ordinal();
+	private static final int BRANCO = Cor.BRANCO.ordinal();
+	private static final int[] PROMOCOES = { RAINHA, TORRE, BISPO, CAVALO };
+
+	private final ForkJoinPool pool;
+	private final Path diretorio;
+	// Tabelas ja geradas ou abertas, usadas pelas capturas e promocoes
+	private final SondaFinais sonda = new SondaFinais();
+
+	public GeradorFinais() {
+		this(null, ForkJoinPool.commonPool());
+	}
+
+	// Com diretorio, tabelas que ja existem nele sao abertas em vez de geradas e as novas sao gravadas
+	public GeradorFinais(Path diretorio, ForkJoinPool pool) {
+		this.diretorio = diretorio;
+		this.pool = pool;
+	}
+
+	public SondaFinais getSonda() {
+		return sonda;
+	}
+
+	// Gera (ou abre) a tabela do material e, antes, as de todos os materiais a que ele leva por
+	// captura ou promocao; um material com as cores trocadas vira a sua forma canonica
+	public TabelaFinal gera(Material material) throws IOException {
+		if (!material.eCanonico()) {
+			material = material.espelhado();
+		}
+		TabelaFinal tabela = sonda.tabela(material);
+		if (tabela != null) {
+			return tabela;
+		}
+		Path arquivo = diretorio == null ? null : diretorio.resolve(material.getNome() + TabelaFinal.EXTENSAO);
+		if (arquivo != null && Files.exists(arquivo)) {
+			tabela = TabelaFinal.abre(arquivo);
+			sonda.adiciona(tabela);
+			return tabela;
+		}
+		for (Material menor : dependencias(material)) {
+			gera(menor);
+		}
+		tabela = new Geracao(material).executa();
+		sonda.adiciona(tabela);
+		if (arquivo != null) {
+			tabela.grava(arquivo);
+		}
+		return tabela;
+	}
+
+	private static Set<Material> dependencias(Material material) {
+		Set<Material> menores = new LinkedHashSet<>();
+		int assinatura = material.getAssinatura();
+		for (int i = 2; i < material.getQuantidadePecas(); i++) {
+			int peca = material.getPeca(i);
+			int sem = assinatura - Material.assinatura(peca);
+			if (sem != 0) {
+				menores.add(Material.deAssinatura(sem));
+			}
+			if (peca % 6 == PEAO) {
+				for (int promocao : PROMOCOES) {
+					menores.add(Material.deAssinatura(sem + Material.assinatura(peca - PEAO + promocao)));
+				}
+			}
+		}
+		return menores;
+	}
+
+	// Estado da geracao de um material; os passos sao executados pelas tarefas
+	private class Geracao {
+
+		private final Material material;
+		private final int n;
+		private final int tamanho;
+		private final int[] pecas;
+		// Por lado a jogar (Cor.ordinal()): valor de trabalho, movimentos ainda nao refutados e
+		// nivel vindo das capturas e promocoes (impar: vitoria nele; par: derrota nao antes dele)
+		private final byte[][] valor;
+		private final byte[][] contador;
+		private final byte[][] conversao;
+		private int nivel;
+
+		Geracao(Material material) {
+			this.material = material;
+			n = material.getQuantidadePecas();
+			tamanho = material.getTamanho();
+			pecas = new int[n];
+			for (int i = 0; i < n; i++) {
+				pecas[i] = material.getPeca(i);
+			}
+			valor = new byte[2][tamanho];
+			contador = new byte[2][tamanho];
+			conversao = new byte[2][tamanho];
+		}
+
+		TabelaFinal executa() {
+			int ultimaConversao = (int) (long) pool.invoke(new Passo(this, INICIO, 0, tamanho));
+			for (nivel = 0;; nivel++) {
+				if (nivel > DISTANCIA_MAXIMA) {
+					throw new IllegalStateException("Distancia ate o mate excede o formato em " + material);
+				}
+				if (nivel > 0 && nivel <= ultimaConversao) {
+					pool.invoke(new Passo(this, AGENDA, 0, tamanho));
+				}
+				long resolvidas = pool.invoke(new Passo(this, PROPAGA, 0, tamanho));
+				if (resolvidas == 0 && nivel >= ultimaConversao) {
+					break;
+				}
+			}
+			int maiorDistancia = (int) (long) pool.invoke(new Passo(this, FINAL, 0, tamanho));
+			return new TabelaFinal(material, new ByteBuffer[] { ByteBuffer.wrap(valor[0]), ByteBuffer.wrap(valor[1]) },
+					maiorDistancia);
+		}
+
+		// Casas das pecas no indice, na ordem do material
+		void decodifica(int indice, int[] casas) {
+			for (int i = 0; i < n; i++) {
+				casas[i] = (indice >>> (6 * i)) & 63;
+			}
+		}
+
+		// Posicao possivel com vez a jogar: casas distintas, sem peao na primeira ou na ultima
+		// linha e sem o rei de quem nao joga atacado
+		boolean legal(int[] casas, int[] tipos, int vez) {
+			long ocupacao = 0L;
+			for (int i = 0; i < n; i++) {
+				long bit = 1L << casas[i];
+				if ((ocupacao & bit) != 0 || (tipos[i] % 6 == PEAO && (casas[i] < 8 || casas[i] >= 56))) {
+					return false;
+				}
+				ocupacao |= bit;
+			}
+			return !atacada(casas[vez == BRANCO ? 1 : 0], vez, casas, tipos, ocupacao);
+		}
+
+		// A casa e atacada por alguma peca da cor? Casa -1 marca uma peca capturada
+		boolean atacada(int casa, int cor, int[] casas, int[] tipos, long ocupacao) {
+			for (int i = 0; i < n; i++) {
+				if (casas[i] >= 0 && tipos[i] / 6 == cor && (ataques(tipos[i], casas[i], ocupacao) & (1L << casa)) != 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		// Casos pelo ordinal de TipoPeca: peao, cavalo, bispo, torre, rainha e rei
+		long ataques(int peca, int casa, long ocupacao) {
+			switch (peca % 6) {
+			case 0:
+				return Bitboards.peao(casa, peca / 6 == BRANCO ? Cor.BRANCO : Cor.PRETO);
+			case 1:
+				return Bitboards.cavalo(casa);
+			case 2:
+				return Bitboards.bispo(casa, ocupacao);
+			case 3:
+				return Bitboards.torre(casa, ocupacao);
+			case 4:
+				return Bitboards.rainha(casa, ocupacao);
+			default:
+				return Bitboards.rei(casa);
+			}
+		}
+
+		// Examina a posicao para a frente; devolve o nivel de conversao gravado (0 se nenhum)
+		int inicia(int indice, int vez, int[] casas, int[] tipos, int[] depois, int[] tiposDepois) {
+			decodifica(indice, casas);
+			System.arraycopy(pecas, 0, tipos, 0, n);
+			if (!legal(casas, tipos, vez)) {
+				valor[vez][indice] = (byte) TabelaFinal.ILEGAL;
+				return 0;
+			}
+			long proprias = 0L;
+			long ocupacao = 0L;
+			for (int i = 0; i < n; i++) {
+				ocupacao |= 1L << casas[i];
+				if (tipos[i] / 6 == vez) {
+					proprias |= 1L << casas[i];
+				}
+			}
+			long oponentes = ocupacao & ~proprias;
+			int frente = vez == BRANCO ? -8 : 8;
+
+			int noMaterial = 0;
+			int naoRefutadas = 0;
+			int legais = 0;
+			int menorVitoria = Integer.MAX_VALUE;
+			int maiorRefutacao = -1;
+			for (int i = 0; i < n; i++) {
+				if (tipos[i] / 6 != vez) {
+					continue;
+				}
+				int origem = casas[i];
+				long destinos;
+				if (tipos[i] % 6 == PEAO) {
+					destinos = Bitboards.peao(origem, vez == BRANCO ? Cor.BRANCO : Cor.PRETO) & oponentes;
+					int avanco = origem + frente;
+					if ((ocupacao & (1L << avanco)) == 0) {
+						destinos |= 1L << avanco;
+						boolean linhaInicial = vez == BRANCO ? origem >= 48 : origem < 16;
+						if (linhaInicial && (ocupacao & (1L << (avanco + frente))) == 0) {
+							destinos |= 1L << (avanco + frente);
+						}
+					}
+				} else {
+					destinos = ataques(tipos[i], origem, ocupacao) & ~proprias;
+				}
+				while (destinos != 0) {
+					int destino = Long.numberOfTrailingZeros(destinos);
+					destinos &= destinos - 1;
+					boolean promove = tipos[i] % 6 == PEAO && (destino < 8 || destino >= 56);
+					boolean captura = (oponentes & (1L << destino)) != 0;
+					for (int p = 0; p < (promove ? PROMOCOES.length : 1); p++) {
+						System.arraycopy(casas, 0, depois, 0, n);
+						System.arraycopy(tipos, 0, tiposDepois, 0, n);
+						depois[i] = destino;
+						if (promove) {
+							tiposDepois[i] = vez * 6 + PROMOCOES[p];
+						}
+						long ocupacaoDepois = (ocupacao & ~(1L << origem)) | (1L << destino);
+						if (captura) {
+							for (int j = 0; j < n; j++) {
+								if (j != i && depois[j] == destino) {
+									depois[j] = -1;
+								}
+							}
+						}
+						if (atacada(depois[vez == BRANCO ? 0 : 1], 1 - vez, depois, tiposDepois, ocupacaoDepois)) {
+							continue;
+						}
+						legais++;
+						if (!captura && !promove) {
+							noMaterial++;
+							continue;
+						}
+						int v = consultaMenor(depois, tiposDepois, 1 - vez);
+						if (v == TabelaFinal.EMPATE) {
+							naoRefutadas++;
+						} else if (((v - 1) & 1) == 0) {
+							// O oponente perde em v - 1: vitoria em v
+							menorVitoria = Math.min(menorVitoria, v);
+							naoRefutadas++;
+						} else {
+							maiorRefutacao = Math.max(maiorRefutacao, v - 1);
+						}
+					}
+				}
+			}
+
+			if (legais == 0) {
+				boolean xeque = atacada(casas[vez == BRANCO ? 0 : 1], 1 - vez, casas, tipos, ocupacao);
+				valor[vez][indice] = (byte) (xeque ? 1 : AFOGADO);
+				return 0;
+			}
+			contador[vez][indice] = (byte) (noMaterial + naoRefutadas);
+			int nivelConversao = 0;
+			if (menorVitoria != Integer.MAX_VALUE) {
+				nivelConversao = menorVitoria;
+			} else if (maiorRefutacao >= 0) {
+				nivelConversao = maiorRefutacao + 1;
+			}
+			if (nivelConversao > DISTANCIA_MAXIMA) {
+				throw new IllegalStateException("Distancia ate o mate excede o formato em " + material);
+			}
+			conversao[vez][indice] = (byte) nivelConversao;
+			return nivelConversao;
+		}
+
+		private int consultaMenor(int[] casas, int[] tipos, int vez) {
+			long empacotadas = 0L;
+			int k = 0;
+			for (int i = 0; i < n; i++) {
+				if (casas[i] >= 0) {
+					empacotadas |= (long) ((tipos[i] << 6) | casas[i]) << (k * 11);
+					k++;
+				}
+			}
+			int v = sonda.consulta(empacotadas, k, vez);
+			if (v == SondaFinais.DESCONHECIDO || v == TabelaFinal.ILEGAL) {
+				throw new IllegalStateException("Tabela menor ausente ou inconsistente para " + material);
+			}
+			return v;
+		}
+
+		// Nivel vindo de capturas e promocoes: vitoria no nivel impar, derrota no par se todos os
+		// movimentos dentro do material ja foram refutados
+		int agenda(int indice, int vez) {
+			if (valor[vez][indice] != NAO_RESOLVIDA || (conversao[vez][indice] & 0xFF) != nivel) {
+				return 0;
+			}
+			if ((nivel & 1) == 1 || contador[vez][indice] == 0) {
+				valor[vez][indice] = (byte) (nivel + 1);
+				return 1;
+			}
+			return 0;
+		}
+
+		// Desfaz os movimentos de quem nao joga na posicao resolvida no nivel atual
+		int propaga(int indice, int vez, int[] casas) {
+			if ((valor[vez][indice] & 0xFF) != nivel + 1) {
+				return 0;
+			}
+			decodifica(indice, casas);
+			long ocupacao = 0L;
+			for (int i = 0; i < n; i++) {
+				ocupacao |= 1L << casas[i];
+			}
+			int outro = 1 - vez;
+			boolean derrota = (nivel & 1) == 0;
+			for (int i = 0; i < n; i++) {
+				if (pecas[i] / 6 != outro) {
+					continue;
+				}
+				int destino = casas[i];
+				long origens;
+				if (pecas[i] % 6 == PEAO) {
+					int frente = outro == BRANCO ? -8 : 8;
+					int atras = destino - frente;
+					origens = 0L;
+					if (atras >= 8 && atras < 56 && (ocupacao & (1L << atras)) == 0) {
+						origens = 1L << atras;
+						boolean linhaDuplo = outro == BRANCO ? destino >= 32 && destino < 40 : destino >= 24 && destino < 32;
+						if (linhaDuplo && (ocupacao & (1L << (atras - frente))) == 0) {
+							origens |= 1L << (atras - frente);
+						}
+					}
+				} else {
+					origens = ataques(pecas[i], destino, ocupacao) & ~ocupacao;
+				}
+				while (origens != 0) {
+					int origem = Long.numberOfTrailingZeros(origens);
+					origens &= origens - 1;
+					int anterior = indice ^ ((destino ^ origem) << (6 * i));
+					if (valor[outro][anterior] != NAO_RESOLVIDA) {
+						continue;
+					}
+					if (derrota) {
+						valor[outro][anterior] = (byte) (nivel + 2);
+					} else if (decrementa(contador[outro], anterior) == 0) {
+						int nivelConversao = conversao[outro][anterior] & 0xFF;
+						if (nivelConversao <= nivel + 1) {
+							valor[outro][anterior] = (byte) (nivel + 2);
+						}
+					}
+				}
+			}
+			return 1;
+		}
+
+		// Decremento atomico por compareAndSet: getAndAdd com byte[] devolveu valores anteriores
+		// errados depois de compilado pelo JIT (C2 do JDK 17), o que deixava contadores sem zerar
+		private int decrementa(byte[] contadores, int indice) {
+			byte anterior;
+			do {
+				anterior = (byte) CONTADOR.getVolatile(contadores, indice);
+			} while (!CONTADOR.compareAndSet(contadores, indice, anterior, (byte) (anterior - 1)));
+			return anterior - 1;
+		}
+
+		// Converte os valores de trabalho para os do arquivo; devolve a maior distancia
+		int finaliza(int indice, int vez) {
+			int v = valor[vez][indice] & 0xFF;
+			if (v == NAO_RESOLVIDA || v == AFOGADO) {
+				valor[vez][indice] = TabelaFinal.EMPATE;
+				return 0;
+			}
+			return v == TabelaFinal.ILEGAL ? 0 : v - 1;
+		}
+
+	}
+
+	private static class Passo extends RecursiveTask<Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Geracao geracao;
+		private final int tipo;
+		private final int inicio;
+		private final int fim;
+
+		Passo(Geracao geracao, int tipo, int inicio, int fim) {
+			this.geracao = geracao;
+			this.tipo = tipo;
+			this.inicio = inicio;
+			this.fim = fim;
+		}
+
+		// Soma das posicoes resolvidas, ou o maior nivel no INICIO e a maior distancia no FINAL
+		@Override
+		protected Long compute() {
+			if (fim - inicio > POSICOES_POR_TAREFA) {
+				int meio = (inicio + fim) >>> 1;
+				Passo esquerda = new Passo(geracao, tipo, inicio, meio);
+				esquerda.fork();
+				long direita = new Passo(geracao, tipo, meio, fim).compute();
+				long resultado = esquerda.join();
+				return tipo == INICIO || tipo == FINAL ? Math.max(resultado, direita) : resultado + direita;
+			}
+			int[] casas = new int[geracao.n];
+			int[] tipos = new int[geracao.n];
+			int[] depois = new int[geracao.n];
+			int[] tiposDepois = new int[geracao.n];
+			long resultado = 0;
+			for (int vez = 0; vez < 2; vez++) {
+				for (int indice = inicio; indice < fim; indice++) {
+					switch (tipo) {
+					case INICIO:
+						resultado = Math.max(resultado, geracao.inicia(indice, vez, casas, tipos, depois, tiposDepois));
+						break;
+					case AGENDA:
+						resultado += geracao.agenda(indice, vez);
+						break;
+					case PROPAGA:
+						resultado += geracao.propaga(indice, vez, casas);
+						break;
+					default:
+						resultado = Math.max(resultado, geracao.finaliza(indice, vez));
+						break;
+					}
+				}
+			}
+			return resultado;
+		}
+
+	}
+
+}
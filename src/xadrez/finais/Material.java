@@ -0,0 +1,161 @@
+package xadrez.finais;
+
+import xadrez.Bitboards;
+import xadrez.Cor;
+import xadrez.TipoPeca;
+
+// Conjunto de pecas de uma tabela de finais, pelo nome no formato usual: as pecas brancas a partir
+// do rei e depois as pretas, como KQK, KBNK ou KRKP. As pecas ficam numa ordem fixa (rei branco,
+// rei preto, brancas e pretas da rainha ao peao) e cada posicao e indexada pelas casas nessa
+// ordem, seis bits por peca, o que dispensa qualquer tabela de indices
+public final class Material {
+
+	public static final int MAXIMO_PECAS = 5;
+
+	private static final String LETRAS = "PNBRQK";
+	private static final int REI_BRANCO = Bitboards.indice(TipoPeca.REI, Cor.BRANCO);
+	private static final int REI_PRETO = Bitboards.indice(TipoPeca.REI, Cor.PRETO);
+	// Peso de cada tipo so para decidir qual lado fica com as brancas na forma canonica
+	private static final int[] PESO = { 1, 3, 3, 5, 9 };
+
+	// Indices de bitboard (Bitboards.indice) das pecas, na ordem do indice da posicao
+	private final int[] pecas;
+	private final int assinatura;
+	private final String nome;
+
+	private Material(int assinatura) {
+		this.assinatura = assinatura;
+		int n = 2;
+		for (int s = assinatura; s != 0; s >>>= 3) {
+			n += s & 7;
+		}
+		pecas = new int[n];
+		pecas[0] = REI_BRANCO;
+		pecas[1] = REI_PRETO;
+		int i = 2;
+		StringBuilder sb = new StringBuilder("K");
+		for (Cor cor : new Cor[] { Cor.BRANCO, Cor.PRETO }) {
+			if (cor == Cor.PRETO) {
+				sb.append('K');
+			}
+			for (int tipo = TipoPeca.RAINHA.ordinal(); tipo >= 0; tipo--) {
+				for (int k = contagem(assinatura, tipo, cor.ordinal()); k > 0; k--) {
+					pecas[i++] = cor.ordinal() * 6 + tipo;
+					sb.append(LETRAS.charAt(tipo));
+				}
+			}
+		}
+		nome = sb.toString();
+	}
+
+	// Material a partir do nome (KQK, KBNK, KPKP...); maiusculas ou minusculas
+	public static Material deNome(String nome) {
+		String texto = nome.toUpperCase();
+		int segundoRei = texto.indexOf('K', 1);
+		if (texto.length() > MAXIMO_PECAS || !texto.startsWith("K") || segundoRei < 0
+				|| texto.indexOf('K', segundoRei + 1) >= 0) {
+			throw new IllegalArgumentException("Material invalido: " + nome);
+		}
+		int assinatura = 0;
+		for (int i = 1; i < texto.length(); i++) {
+			if (i == segundoRei) {
+				continue;
+			}
+			int tipo = LETRAS.indexOf(texto.charAt(i));
+			if (tipo < 0 || tipo == TipoPeca.REI.ordinal()) {
+				throw new IllegalArgumentException("Material invalido: " + nome);
+			}
+			assinatura += 1 << deslocamento(tipo, i < segundoRei ? Cor.BRANCO.ordinal() : Cor.PRETO.ordinal());
+		}
+		return new Material(assinatura);
+	}
+
+	static Material deAssinatura(int assinatura) {
+		return new Material(assinatura);
+	}
+
+	// Assinatura de um conjunto de pecas: tres bits de contagem por tipo e cor, sem os reis
+	static int assinatura(int peca) {
+		int tipo = peca % 6;
+		return tipo == TipoPeca.REI.ordinal() ? 0 : 1 << deslocamento(tipo, peca / 6);
+	}
+
+	// Mesma assinatura com as cores trocadas
+	static int espelha(int assinatura) {
+		return ((assinatura & 0x7FFF) << 15) | (assinatura >>> 15);
+	}
+
+	// A forma canonica deixa com as brancas o lado mais forte; so ela e gerada e gravada, e a
+	// outra e consultada espelhando o tabuleiro e trocando as cores
+	static boolean eCanonica(int assinatura) {
+		int brancas = 0;
+		int pretas = 0;
+		for (int tipo = 0; tipo < 5; tipo++) {
+			brancas += PESO[tipo] * contagem(assinatura, tipo, Cor.BRANCO.ordinal());
+			pretas += PESO[tipo] * contagem(assinatura, tipo, Cor.PRETO.ordinal());
+		}
+		if (brancas != pretas) {
+			return brancas > pretas;
+		}
+		return (assinatura >>> 15) >= (assinatura & 0x7FFF);
+	}
+
+	// Peca com a cor trocada
+	static int trocaCor(int peca) {
+		return peca < 6 ? peca + 6 : peca - 6;
+	}
+
+	private static int deslocamento(int tipo, int cor) {
+		return (cor * 5 + tipo) * 3;
+	}
+
+	private static int contagem(int assinatura, int tipo, int cor) {
+		return (assinatura >>> deslocamento(tipo, cor)) & 7;
+	}
+
+	public String getNome() {
+		return nome;
+	}
+
+	public int getQuantidadePecas() {
+		return pecas.length;
+	}
+
+	// Indice de bitboard da peca na posicao i da ordem do indice
+	public int getPeca(int i) {
+		return pecas[i];
+	}
+
+	int getAssinatura() {
+		return assinatura;
+	}
+
+	public boolean eCanonico() {
+		return eCanonica(assinatura);
+	}
+
+	public Material espelhado() {
+		return new Material(espelha(assinatura));
+	}
+
+	// Posicoes por lado a jogar: 64 elevado ao numero de pecas
+	public int getTamanho() {
+		return 1 << (6 * pecas.length);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof Material && ((Material) obj).assinatura == assinatura;
+	}
+
+	@Override
+	public int hashCode() {
+		return assinatura;
+	}
+
+	@Override
+	public String toString() {
+		return nome;
+	}
+
+}
@@ -0,0 +1,161 @@
+package xadrez.finais;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import xadrez.Bitboards;
+import xadrez.Cor;
+import xadrez.PartidaXadrez;
+import xadrez.TipoPeca;
+
+// Consulta as tabelas de finais a partir de uma PartidaXadrez: identifica o material pelos
+// bitboards, espelha a posicao quando a tabela guardada e a do material com as cores trocadas e
+// le um byte da tabela mapeada, sem alocar. As consultas podem ser feitas de varias threads;
+// adiciona nao, e deve acontecer antes de compartilhar a sonda
+public class SondaFinais {
+
+	// Material sem tabela, direito de roque ou en passant possivel: as tabelas nao os consideram
+	public static final int DESCONHECIDO = -1;
+
+	private static final TipoPeca[] TIPOS = TipoPeca.values();
+
+	private TabelaFinal[] tabelas = new TabelaFinal[0];
+	private int[] assinaturas = new int[0];
+
+	// Abre todas as tabelas do diretorio (arquivos com TabelaFinal.EXTENSAO)
+	public static SondaFinais abre(Path diretorio) throws IOException {
+		SondaFinais sonda = new SondaFinais();
+		try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, "*" + TabelaFinal.EXTENSAO)) {
+			for (Path arquivo : arquivos) {
+				sonda.adiciona(TabelaFinal.abre(arquivo));
+			}
+		}
+		return sonda;
+	}
+
+	public void adiciona(TabelaFinal tabela) {
+		int assinatura = tabela.getMaterial().getAssinatura();
+		int i = indiceTabela(assinatura);
+		if (i >= 0) {
+			tabelas[i] = tabela;
+			return;
+		}
+		tabelas = Arrays.copyOf(tabelas, tabelas.length + 1);
+		assinaturas = Arrays.copyOf(assinaturas, assinaturas.length + 1);
+		tabelas[tabelas.length - 1] = tabela;
+		assinaturas[assinaturas.length - 1] = assinatura;
+	}
+
+	public boolean possui(Material material) {
+		return tabela(material) != null;
+	}
+
+	// Tabela guardada para o material ou para ele com as cores trocadas, ou null
+	TabelaFinal tabela(Material material) {
+		int assinatura = material.getAssinatura();
+		int i = indiceTabela(material.eCanonico() ? assinatura : Material.espelha(assinatura));
+		return i < 0 ? null : tabelas[i];
+	}
+
+	public int getQuantidadeTabelas() {
+		return tabelas.length;
+	}
+
+	// Valor bruto (ver TabelaFinal) da posicao para o lado a jogar, ou DESCONHECIDO
+	public int consulta(PartidaXadrez partida) {
+		long ocupacao = partida.getOcupacao();
+		int n = Long.bitCount(ocupacao);
+		if (n > Material.MAXIMO_PECAS || partida.getDireitosRoque() != 0) {
+			return DESCONHECIDO;
+		}
+		Cor vez = partida.getVez();
+		if (partida.getEnPassantVuneravel() != null) {
+			int alvo = partida.getEnPassantVuneravel().getCasa() + (vez == Cor.BRANCO ? -8 : 8);
+			if ((Bitboards.peao(alvo, oponente(vez)) & partida.getBitboard(TipoPeca.PEAO, vez)) != 0) {
+				return DESCONHECIDO;
+			}
+		}
+
+		// Ate cinco pecas empacotadas num long, sete bits cada: peca (indice de bitboard) e casa
+		long pecas = 0L;
+		int k = 0;
+		for (Cor cor : Cor.values()) {
+			for (TipoPeca tipo : TIPOS) {
+				long b = partida.getBitboard(tipo, cor);
+				while (b != 0) {
+					pecas |= (long) ((Bitboards.indice(tipo, cor) << 6) | Long.numberOfTrailingZeros(b)) << (k * 11);
+					k++;
+					b &= b - 1;
+				}
+			}
+		}
+		return consulta(pecas, n, vez.ordinal());
+	}
+
+	// Pecas empacotadas como em consulta(PartidaXadrez): onze bits cada, indice de bitboard << 6 | casa
+	int consulta(long pecas, int n, int vez) {
+		int assinatura = 0;
+		for (int i = 0; i < n; i++) {
+			assinatura += Material.assinatura((int) (pecas >>> (i * 11 + 6)) & 0x1F);
+		}
+		if (assinatura == 0) {
+			// So os reis
+			return TabelaFinal.EMPATE;
+		}
+		boolean espelha = !Material.eCanonica(assinatura);
+		int t = indiceTabela(espelha ? Material.espelha(assinatura) : assinatura);
+		if (t < 0) {
+			return DESCONHECIDO;
+		}
+		TabelaFinal tabela = tabelas[t];
+		Material material = tabela.getMaterial();
+
+		// Cada peca da ordem do material pega a primeira ainda livre do mesmo tipo e cor
+		int indice = 0;
+		int usadas = 0;
+		for (int slot = 0; slot < n; slot++) {
+			int procurada = material.getPeca(slot);
+			for (int i = 0; i < n; i++) {
+				int peca = (int) (pecas >>> (i * 11 + 6)) & 0x1F;
+				if ((usadas & (1 << i)) == 0 && (espelha ? Material.trocaCor(peca) : peca) == procurada) {
+					int casa = (int) (pecas >>> (i * 11)) & 63;
+					indice |= (espelha ? casa ^ 56 : casa) << (6 * slot);
+					usadas |= 1 << i;
+					break;
+				}
+			}
+		}
+		return tabela.valor(indice, espelha ? 1 - vez : vez);
+	}
+
+	private int indiceTabela(int assinatura) {
+		for (int i = 0; i < assinaturas.length; i++) {
+			if (assinaturas[i] == assinatura) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static Cor oponente(Cor cor) {
+		return cor == Cor.BRANCO ? Cor.PRETO : Cor.BRANCO;
+	}
+
+	// Interpretacao do valor bruto: o lado a jogar ganha, perde ou empata
+	public static boolean vitoria(int valor) {
+		return valor > 0 && valor != TabelaFinal.ILEGAL && (valor & 1) == 0;
+	}
+
+	public static boolean derrota(int valor) {
+		return valor > 0 && valor != TabelaFinal.ILEGAL && (valor & 1) == 1;
+	}
+
+	// Meios-lances ate o mate, contando o que da o mate; 0 se o lado a jogar ja levou mate
+	public static int meiosLancesAteMate(int valor) {
+		return valor - 1;
+	}
+
+}
@@ -0,0 +1,102 @@
+package xadrez.finais;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import xadrez.Cor;
+
+// Tabela de um material: um byte por posicao e lado a jogar, com 0 = empate, 255 = posicao
+// ilegal e n = mate em n - 1 meios-lances (vitoria do lado a jogar se n - 1 for impar, derrota
+// se for par). O arquivo tem um cabecalho de 16 bytes seguido de uma secao por lado a jogar, de
+// Material.getTamanho() bytes cada, na ordem de Cor.ordinal(): primeiro pretas a jogar (PRETO = 0),
+// depois brancas a jogar (BRANCO = 1). Aberto com abre, e mapeado em memoria e o sistema
+// operacional traz do disco so as paginas consultadas
+public final class TabelaFinal {
+
+	public static final String EXTENSAO = ".xtb";
+
+	public static final int EMPATE = 0;
+	public static final int ILEGAL = 255;
+
+	private static final int MAGICO = 0x58544231; // "XTB1"
+	private static final int CABECALHO = 16;
+
+	private final Material material;
+	// Uma secao por lado a jogar, indexada por Cor.ordinal(); com cinco pecas cada uma tem 1 GB
+	private final ByteBuffer[] dados;
+	private final int maiorDistancia;
+
+	TabelaFinal(Material material, ByteBuffer[] dados, int maiorDistancia) {
+		this.material = material;
+		this.dados = dados;
+		this.maiorDistancia = maiorDistancia;
+	}
+
+	public static TabelaFinal abre(Path arquivo) throws IOException {
+		try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+			ByteBuffer cabecalho = ByteBuffer.allocate(CABECALHO).order(ByteOrder.LITTLE_ENDIAN);
+			while (cabecalho.hasRemaining()) {
+				if (canal.read(cabecalho) < 0) {
+					break;
+				}
+			}
+			cabecalho.flip();
+			if (cabecalho.remaining() < CABECALHO || cabecalho.getInt() != MAGICO) {
+				throw new IOException("Arquivo nao e uma tabela de finais: " + arquivo);
+			}
+			Material material = Material.deAssinatura(cabecalho.getInt());
+			int maiorDistancia = cabecalho.getInt();
+			int tamanho = material.getTamanho();
+			if (canal.size() != CABECALHO + 2L * tamanho) {
+				throw new IOException("Tamanho inesperado para " + material + ": " + arquivo);
+			}
+			// O mapeamento continua valido depois de fechar o canal
+			ByteBuffer[] dados = new ByteBuffer[2];
+			for (int vez = 0; vez < 2; vez++) {
+				dados[vez] = canal.map(FileChannel.MapMode.READ_ONLY, CABECALHO + (long) vez * tamanho, tamanho);
+			}
+			return new TabelaFinal(material, dados, maiorDistancia);
+		}
+	}
+
+	public void grava(Path arquivo) throws IOException {
+		try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer cabecalho = ByteBuffer.allocate(CABECALHO).order(ByteOrder.LITTLE_ENDIAN);
+			cabecalho.putInt(MAGICO).putInt(material.getAssinatura()).putInt(maiorDistancia).putInt(0).flip();
+			while (cabecalho.hasRemaining()) {
+				canal.write(cabecalho);
+			}
+			for (ByteBuffer secao : dados) {
+				ByteBuffer conteudo = secao.duplicate();
+				conteudo.clear();
+				while (conteudo.hasRemaining()) {
+					canal.write(conteudo);
+				}
+			}
+		}
+	}
+
+	public Material getMaterial() {
+		return material;
+	}
+
+	// Maior distancia ate o mate da tabela, em meios-lances
+	public int getMaiorDistancia() {
+		return maiorDistancia;
+	}
+
+	// Valor bruto da posicao de indice dado (ver Material) com o lado vez a jogar
+	public int valor(int indice, Cor vez) {
+		return valor(indice, vez.ordinal());
+	}
+
+	int valor(int indice, int vez) {
+		return dados[vez].get(indice) & 0xFF;
+	}
+
+}
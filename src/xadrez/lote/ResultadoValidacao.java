@@ -0,0 +1,35 @@
+package xadrez.lote;
+
+import xadrez.EstadoPartida;
+
+// Resultado compacto da validacao de uma partida: o indice do primeiro lance ilegal (ou -1)
+// e a posicao em que a partida parou, depois do ultimo lance valido
+public final class ResultadoValidacao {
+
+	private final int primeiroInvalido;
+	private final EstadoPartida estadoFinal;
+
+	ResultadoValidacao(int primeiroInvalido, EstadoPartida estadoFinal) {
+		this.primeiroInvalido = primeiroInvalido;
+		this.estadoFinal = estadoFinal;
+	}
+
+	public boolean eValida() {
+		return primeiroInvalido < 0;
+	}
+
+	// Indice na lista do primeiro lance que nao e legal na posicao, ou -1 se todos sao
+	public int getPrimeiroInvalido() {
+		return primeiroInvalido;
+	}
+
+	public EstadoPartida getEstadoFinal() {
+		return estadoFinal;
+	}
+
+	@Override
+	public String toString() {
+		return eValida() ? "valida" : "lance " + primeiroInvalido + " invalido";
+	}
+
+}
@@ -0,0 +1,121 @@
+package xadrez.lote;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import xadrez.EstadoPartida;
+import xadrez.Movimento;
+import xadrez.PartidaXadrez;
+
+// Valida listas de lances em lote, sem excecoes: cada lance e procurado entre os movimentos
+// legais da posicao e o primeiro que nao estiver la encerra a partida. Uma instancia reaproveita
+// a mesma PartidaXadrez e nao e segura entre threads; validaTodas divide as partidas entre
+// as threads de um ForkJoinPool, com um validador por tarefa
+public class ValidadorPartidas {
+
+	// Partidas validadas por uma tarefa antes de deixar de dividir o trabalho
+	private static final int PARTIDAS_POR_TAREFA = 32;
+
+	private final PartidaXadrez partida = new PartidaXadrez();
+	private final int[] legais = new int[Movimento.MAXIMO_POR_POSICAO];
+
+	// Lances codificados como em Movimento.deTexto: origem, destino e, na promocao, o tipo;
+	// promocao sem tipo vale rainha
+	public ResultadoValidacao valida(int[] lances) {
+		partida.reinicia();
+		return aplica(lances);
+	}
+
+	public ResultadoValidacao valida(EstadoPartida inicio, int[] lances) {
+		partida.restauraEstado(inicio);
+		return aplica(lances);
+	}
+
+	// Lances em notacao de coordenadas (e2e4, e7e8q); texto mal formado conta como lance ilegal
+	public ResultadoValidacao valida(List<? extends CharSequence> lances) {
+		int[] codificados = new int[lances.size()];
+		for (int i = 0; i < codificados.length; i++) {
+			codificados[i] = Movimento.deTexto(lances.get(i));
+		}
+		return valida(codificados);
+	}
+
+	public static ResultadoValidacao[] validaTodas(List<int[]> partidas) {
+		return validaTodas(partidas, ForkJoinPool.commonPool());
+	}
+
+	public static ResultadoValidacao[] validaTodas(List<int[]> partidas, ForkJoinPool pool) {
+		ResultadoValidacao[] resultados = new ResultadoValidacao[partidas.size()];
+		pool.invoke(new Tarefa(partidas, resultados, 0, resultados.length));
+		return resultados;
+	}
+
+	private ResultadoValidacao aplica(int[] lances) {
+		for (int i = 0; i < lances.length; i++) {
+			int movimento = procura(lances[i]);
+			if (movimento < 0) {
+				return resultado(i);
+			}
+			partida.makeMove(movimento);
+		}
+		return resultado(-1);
+	}
+
+	// makeMove nao testa o mate, entao a fotografia so e tirada depois de testa-lo
+	private ResultadoValidacao resultado(int primeiroInvalido) {
+		partida.atualizaXequeMate();
+		return new ResultadoValidacao(primeiroInvalido, partida.getEstado());
+	}
+
+	private int procura(int lance) {
+		if (lance < 0) {
+			return -1;
+		}
+		int origem = Movimento.origem(lance);
+		int destino = Movimento.destino(lance);
+		int promocao = Movimento.ePromocao(lance) ? Movimento.tipo(lance) : Movimento.PROMOCAO_RAINHA;
+		int n = partida.legalMoves(legais);
+		for (int i = 0; i < n; i++) {
+			int m = legais[i];
+			// Tipo de promocao num lance que nao promove tambem e ilegal
+			if (Movimento.origem(m) == origem && Movimento.destino(m) == destino
+					&& (Movimento.ePromocao(m) ? Movimento.tipo(m) == promocao : !Movimento.ePromocao(lance))) {
+				return m;
+			}
+		}
+		return -1;
+	}
+
+	private static class Tarefa extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<int[]> partidas;
+		private final ResultadoValidacao[] resultados;
+		private final int inicio;
+		private final int fim;
+
+		Tarefa(List<int[]> partidas, ResultadoValidacao[] resultados, int inicio, int fim) {
+			this.partidas = partidas;
+			this.resultados = resultados;
+			this.inicio = inicio;
+			this.fim = fim;
+		}
+
+		@Override
+		protected void compute() {
+			if (fim - inicio <= PARTIDAS_POR_TAREFA) {
+				ValidadorPartidas validador = new ValidadorPartidas();
+				for (int i = inicio; i < fim; i++) {
+					resultados[i] = validador.valida(partidas.get(i));
+				}
+				return;
+			}
+			int meio = (inicio + fim) >>> 1;
+			invokeAll(new Tarefa(partidas, resultados, inicio, meio), new Tarefa(partidas, resultados, meio, fim));
+		}
+
+	}
+
+}
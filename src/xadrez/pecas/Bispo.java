@@ -1,9 +1,10 @@
 package xadrez.pecas;
 
-import tabuleiro.Posicao;
 import tabuleiro.Tabuleiro;
+import xadrez.Bitboards;
 import xadrez.Cor;
 import xadrez.PecaXadrez;
+import xadrez.TipoPeca;
 
 public class Bispo extends PecaXadrez {
 
@@ -12,52 +13,15 @@ public class Bispo extends PecaXadrez {
 	}
 
 	@Override
-	public boolean[][] movimentosPossiveis() {
-		boolean[][] mat = new boolean[getTabuleiro().getLinhas()][getTabuleiro().getColunas()];
-
-		Posicao p = new Posicao(0, 0);
-
-		// Para noroeste
-		p.setValores(posicao.getLinha() - 1, posicao.getColuna() - 1);
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setValores(p.getLinha() - 1, p.getColuna() - 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para nordeste
-		p.setValores(posicao.getLinha() - 1, posicao.getColuna() + 1);
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setValores(p.getLinha() - 1, p.getColuna() + 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para sudoeste
-		p.setValores(posicao.getLinha() + 1, posicao.getColuna() - 1);
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setValores(p.getLinha() + 1, p.getColuna() - 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para sudeste
-		p.setValores(posicao.getLinha() + 1, posicao.getColuna() + 1);
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setValores(p.getLinha() + 1, p.getColuna() + 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
+	public TipoPeca getTipo() {
+		return TipoPeca.BISPO;
+	}
 
-		return mat;
+	@Override
+	public int geraMovimentos(int[] movimentos, int n) {
+		int casa = getCasa();
+		long destinos = Bitboards.bispo(casa, getTabuleiro().getOcupacao()) & ~pecasProprias();
+		return adicionaMovimentos(movimentos, n, casa, destinos);
 	}
 
 	@Override
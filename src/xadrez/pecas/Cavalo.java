@@ -1,9 +1,10 @@
 package xadrez.pecas;
 
-import tabuleiro.Posicao;
 import tabuleiro.Tabuleiro;
+import xadrez.Bitboards;
 import xadrez.Cor;
 import xadrez.PecaXadrez;
+import xadrez.TipoPeca;
 
 public class Cavalo extends PecaXadrez {
 
@@ -11,58 +12,16 @@ public class Cavalo extends PecaXadrez {
 		super(tabuleiro, cor);
 	}
 
-	private boolean podeMover(Posicao posicao) {
-		PecaXadrez p = (PecaXadrez) getTabuleiro().peca(posicao);
-		return p == null || p.getCor() != getCor();
+	@Override
+	public TipoPeca getTipo() {
+		return TipoPeca.CAVALO;
 	}
 
 	@Override
-	public boolean[][] movimentosPossiveis() {
-		boolean[][] mat = new boolean[getTabuleiro().getLinhas()][getTabuleiro().getColunas()];
-
-		Posicao p = new Posicao(0, 0);
-
-		p.setValores(posicao.getLinha() - 1, posicao.getColuna() - 2);
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		p.setValores(posicao.getLinha() - 2, posicao.getColuna() - 1);
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		p.setValores(posicao.getLinha() - 2, posicao.getColuna() + 1);
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		p.setValores(posicao.getLinha() - 1, posicao.getColuna() + 2);
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		p.setValores(posicao.getLinha() + 1, posicao.getColuna() + 2);
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		p.setValores(posicao.getLinha() + 2, posicao.getColuna() + 1);
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		p.setValores(posicao.getLinha() + 2, posicao.getColuna() - 1);
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		p.setValores(posicao.getLinha() + 1, posicao.getColuna() - 2);
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		return mat;
+	public int geraMovimentos(int[] movimentos, int n) {
+		int casa = getCasa();
+		long destinos = Bitboards.cavalo(casa) & ~pecasProprias();
+		return adicionaMovimentos(movimentos, n, casa, destinos);
 	}
 
 	@Override
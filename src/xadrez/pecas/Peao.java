@@ -1,10 +1,12 @@
 package xadrez.pecas;
 
-import tabuleiro.Posicao;
 import tabuleiro.Tabuleiro;
+import xadrez.Bitboards;
 import xadrez.Cor;
+import xadrez.Movimento;
 import xadrez.PartidaXadrez;
 import xadrez.PecaXadrez;
+import xadrez.TipoPeca;
 
 public class Peao extends PecaXadrez {
 
@@ -16,81 +18,56 @@ public class Peao extends PecaXadrez {
 	}
 
 	@Override
-	public boolean[][] movimentosPossiveis() {
-		boolean[][] mat = new boolean[getTabuleiro().getLinhas()][getTabuleiro().getColunas()];
-
-		Posicao p = new Posicao(0, 0);
+	public TipoPeca getTipo() {
+		return TipoPeca.PEAO;
+	}
 
-		if (getCor() == Cor.BRANCO) {
-			p.setValores(posicao.getLinha() - 1, posicao.getColuna());
-			if (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-				mat[p.getLinha()][p.getColuna()] = true;
-			}
-			p.setValores(posicao.getLinha() - 2, posicao.getColuna());
-			Posicao p2 = new Posicao(posicao.getLinha() - 1, posicao.getColuna());
-			if (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p2) && !haPecaOponente(p2)
-					&& getContaMovimento() == 0) {
-				mat[p.getLinha()][p.getColuna()] = true;
-			}
-			p.setValores(posicao.getLinha() - 1, posicao.getColuna() - 1);
-			if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-				mat[p.getLinha()][p.getColuna()] = true;
-			}
-			p.setValores(posicao.getLinha() - 1, posicao.getColuna() + 1);
-			if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-				mat[p.getLinha()][p.getColuna()] = true;
-			}
+	@Override
+	public int geraMovimentos(int[] movimentos, int n) {
+		int casa = getCasa();
+		long peao = 1L << casa;
+		long vazio = ~getTabuleiro().getOcupacao();
+		boolean branco = getCor() == Cor.BRANCO;
+		int frente = branco ? -8 : 8;
+		long linhaInicial = branco ? Bitboards.LINHA_2 : Bitboards.LINHA_7;
 
-			// #MovimentoEspecial en Passant branco
-			if (posicao.getLinha() == 3) {
-				Posicao esquerda = new Posicao(posicao.getLinha(), posicao.getColuna() - 1);
-				if (getTabuleiro().existePosicao(esquerda) && haPecaOponente(esquerda)
-						&& getTabuleiro().peca(esquerda) == partidaXadrez.getEnPassantVuneravel()) {
-					mat[esquerda.getLinha() - 1][esquerda.getColuna()] = true;
-				}
-				Posicao direita = new Posicao(posicao.getLinha(), posicao.getColuna() + 1);
-				if (getTabuleiro().existePosicao(direita) && haPecaOponente(direita)
-						&& getTabuleiro().peca(direita) == partidaXadrez.getEnPassantVuneravel()) {
-					mat[direita.getLinha() - 1][direita.getColuna()] = true;
-				}
+		int destino = casa + frente;
+		if (destino >= 0 && destino < 64 && (vazio & (1L << destino)) != 0) {
+			n = adicionaMovimento(movimentos, n, casa, destino);
+			if ((peao & linhaInicial) != 0 && (vazio & (1L << (destino + frente))) != 0) {
+				movimentos[n++] = Movimento.codifica(casa, destino + frente, Movimento.PEAO_DUPLO);
 			}
+		}
 
-		} else {
-			p.setValores(posicao.getLinha() + 1, posicao.getColuna());
-			if (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-				mat[p.getLinha()][p.getColuna()] = true;
-			}
-			p.setValores(posicao.getLinha() + 2, posicao.getColuna());
-			Posicao p2 = new Posicao(posicao.getLinha() + 1, posicao.getColuna());
-			if (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p2) && !haPecaOponente(p2)
-					&& getContaMovimento() == 0) {
-				mat[p.getLinha()][p.getColuna()] = true;
-			}
-			p.setValores(posicao.getLinha() + 1, posicao.getColuna() - 1);
-			if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-				mat[p.getLinha()][p.getColuna()] = true;
-			}
-			p.setValores(posicao.getLinha() + 1, posicao.getColuna() + 1);
-			if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-				mat[p.getLinha()][p.getColuna()] = true;
-			}
+		long capturas = Bitboards.peao(casa, getCor()) & pecasOponentes();
+		while (capturas != 0) {
+			n = adicionaMovimento(movimentos, n, casa, Long.numberOfTrailingZeros(capturas));
+			capturas &= capturas - 1;
+		}
 
-			// #MovimentoEspecial en Passant preto
-			if (posicao.getLinha() == 4) {
-				Posicao esquerda = new Posicao(posicao.getLinha(), posicao.getColuna() - 1);
-				if (getTabuleiro().existePosicao(esquerda) && haPecaOponente(esquerda)
-						&& getTabuleiro().peca(esquerda) == partidaXadrez.getEnPassantVuneravel()) {
-					mat[esquerda.getLinha() + 1][esquerda.getColuna()] = true;
-				}
-				Posicao direita = new Posicao(posicao.getLinha(), posicao.getColuna() + 1);
-				if (getTabuleiro().existePosicao(direita) && haPecaOponente(direita)
-						&& getTabuleiro().peca(direita) == partidaXadrez.getEnPassantVuneravel()) {
-					mat[direita.getLinha() + 1][direita.getColuna()] = true;
-				}
+		// #MovimentoEspecial en Passant
+		PecaXadrez vuneravel = partidaXadrez.getEnPassantVuneravel();
+		if (vuneravel != null && vuneravel.getCor() != getCor() && vuneravel.getTipo() == TipoPeca.PEAO
+				&& vuneravel.getCasa() >= 0) {
+			int alvo = vuneravel.getCasa() + frente;
+			if ((Bitboards.peao(casa, getCor()) & (1L << alvo)) != 0) {
+				movimentos[n++] = Movimento.codifica(casa, alvo, Movimento.EN_PASSANT);
 			}
+		}
+		return n;
+	}
 
+	// #MovimentoEspecial promocao: um movimento para cada peca possivel
+	private static int adicionaMovimento(int[] movimentos, int n, int origem, int destino) {
+		if ((1L << destino & (Bitboards.LINHA_8 | Bitboards.LINHA_1)) != 0) {
+			movimentos[n++] = Movimento.codifica(origem, destino, Movimento.PROMOCAO_RAINHA);
+			movimentos[n++] = Movimento.codifica(origem, destino, Movimento.PROMOCAO_TORRE);
+			movimentos[n++] = Movimento.codifica(origem, destino, Movimento.PROMOCAO_BISPO);
+			movimentos[n++] = Movimento.codifica(origem, destino, Movimento.PROMOCAO_CAVALO);
+		} else {
+			movimentos[n++] = Movimento.codifica(origem, destino);
 		}
-		return mat;
+		return n;
 	}
 
 	@Override
@@ -1,9 +1,10 @@
 package xadrez.pecas;
 
-import tabuleiro.Posicao;
 import tabuleiro.Tabuleiro;
+import xadrez.Bitboards;
 import xadrez.Cor;
 import xadrez.PecaXadrez;
+import xadrez.TipoPeca;
 
 public class Rainha extends PecaXadrez {
 
@@ -12,95 +13,20 @@ public class Rainha extends PecaXadrez {
 	}
 
 	@Override
-	public boolean[][] movimentosPossiveis() {
-		boolean[][] mat = new boolean[getTabuleiro().getLinhas()][getTabuleiro().getColunas()];
-
-		Posicao p = new Posicao(0, 0);
-
-		// Para cima
-		p.setValores(posicao.getLinha() - 1, posicao.getColuna());
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setLinha(p.getLinha() - 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para esquerda
-		p.setValores(posicao.getLinha(), posicao.getColuna() - 1);
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setColuna(p.getColuna() - 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para direita
-		p.setValores(posicao.getLinha(), posicao.getColuna() + 1);
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setColuna(p.getColuna() + 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para baixo
-		p.setValores(posicao.getLinha() + 1, posicao.getColuna());
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setLinha(p.getLinha() + 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para noroeste
-		p.setValores(posicao.getLinha() - 1, posicao.getColuna() - 1);
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setValores(p.getLinha() - 1, p.getColuna() - 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para nordeste
-		p.setValores(posicao.getLinha() - 1, posicao.getColuna() + 1);
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setValores(p.getLinha() - 1, p.getColuna() + 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para sudoeste
-		p.setValores(posicao.getLinha() + 1, posicao.getColuna() - 1);
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setValores(p.getLinha() + 1, p.getColuna() - 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
+	public TipoPeca getTipo() {
+		return TipoPeca.RAINHA;
+	}
 
-		// Para sudeste
-		p.setValores(posicao.getLinha() + 1, posicao.getColuna() + 1);
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setValores(p.getLinha() + 1, p.getColuna() + 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-		return mat;
+	@Override
+	public int geraMovimentos(int[] movimentos, int n) {
+		int casa = getCasa();
+		long destinos = Bitboards.rainha(casa, getTabuleiro().getOcupacao()) & ~pecasProprias();
+		return adicionaMovimentos(movimentos, n, casa, destinos);
 	}
 
 	@Override
 	public String toString() {
 		return "Q";
 	}
+
 }
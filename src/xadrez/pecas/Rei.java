@@ -1,10 +1,12 @@
 package xadrez.pecas;
 
-import tabuleiro.Posicao;
 import tabuleiro.Tabuleiro;
+import xadrez.Bitboards;
 import xadrez.Cor;
+import xadrez.Movimento;
 import xadrez.PartidaXadrez;
 import xadrez.PecaXadrez;
+import xadrez.TipoPeca;
 
 public class Rei extends PecaXadrez {
 
@@ -16,98 +18,42 @@ public class Rei extends PecaXadrez {
 	}
 
 	@Override
-	public String toString() {
-		return "K";
+	public TipoPeca getTipo() {
+		return TipoPeca.REI;
 	}
 
-	private boolean podeMover(Posicao posicao) {
-		PecaXadrez p = (PecaXadrez) getTabuleiro().peca(posicao);
-		return p == null || p.getCor() != getCor();
+	@Override
+	public String toString() {
+		return "K";
 	}
 
-	private boolean testaTorreRoque(Posicao posicao) {
-		PecaXadrez p = (PecaXadrez) getTabuleiro().peca(posicao);
+	private boolean testaTorreRoque(int casa) {
+		PecaXadrez p = (PecaXadrez) getTabuleiro().pecaNaCasa(casa);
 		return p != null && p instanceof Torre && p.getCor() == getCor() && p.getContaMovimento() == 0;
 	}
 
 	@Override
-	public boolean[][] movimentosPossiveis() {
-		boolean[][] mat = new boolean[getTabuleiro().getLinhas()][getTabuleiro().getColunas()];
-
-		Posicao p = new Posicao(0, 0);
-
-		// Para cima
-		p.setValores(posicao.getLinha() - 1, posicao.getColuna());
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para baixo
-		p.setValores(posicao.getLinha() + 1, posicao.getColuna());
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para esquerda
-		p.setValores(posicao.getLinha(), posicao.getColuna() - 1);
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para direita
-		p.setValores(posicao.getLinha(), posicao.getColuna() + 1);
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para noroeste
-		p.setValores(posicao.getLinha() - 1, posicao.getColuna() - 1);
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para nordeste
-		p.setValores(posicao.getLinha() - 1, posicao.getColuna() + 1);
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para sudoeste
-		p.setValores(posicao.getLinha() + 1, posicao.getColuna() - 1);
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para sudeste
-		p.setValores(posicao.getLinha() + 1, posicao.getColuna() + 1);
-		if (getTabuleiro().existePosicao(p) && podeMover(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
+	public int geraMovimentos(int[] movimentos, int n) {
+		int casa = getCasa();
+		long destinos = Bitboards.rei(casa) & ~pecasProprias();
+		n = adicionaMovimentos(movimentos, n, casa, destinos);
 
 		// #MovimentoEspecial Roque
 		if (getContaMovimento() == 0 && !partidaXadrez.getXeque()) {
+			long ocupacao = getTabuleiro().getOcupacao();
+			int coluna = posicao.getColuna();
+
 			// Roque do lado do Rei
-			Posicao posT1 = new Posicao(posicao.getLinha(), posicao.getColuna() + 3);
-			if (testaTorreRoque(posT1)) {
-				Posicao p1 = new Posicao(posicao.getLinha(), posicao.getColuna() + 1);
-				Posicao p2 = new Posicao(posicao.getLinha(), posicao.getColuna() + 2);
-				if (getTabuleiro().peca(p1) == null && getTabuleiro().peca(p2) == null) {
-					mat[posicao.getLinha()][posicao.getColuna() + 2] = true;
-				}
+			if (coluna + 3 < getTabuleiro().getColunas() && testaTorreRoque(casa + 3)
+					&& (ocupacao & (3L << (casa + 1))) == 0) {
+				movimentos[n++] = Movimento.codifica(casa, casa + 2, Movimento.ROQUE);
 			}
 
 			// Roque do lado da Rainha
-			Posicao posT2 = new Posicao(posicao.getLinha(), posicao.getColuna() - 4);
-			if (testaTorreRoque(posT2)) {
-				Posicao p1 = new Posicao(posicao.getLinha(), posicao.getColuna() - 1);
-				Posicao p2 = new Posicao(posicao.getLinha(), posicao.getColuna() - 2);
-				Posicao p3 = new Posicao(posicao.getLinha(), posicao.getColuna() - 3);
-				if (getTabuleiro().peca(p1) == null && getTabuleiro().peca(p2) == null
-						&& getTabuleiro().peca(p3) == null) {
-					mat[posicao.getLinha()][posicao.getColuna() - 2] = true;
-				}
+			if (coluna - 4 >= 0 && testaTorreRoque(casa - 4) && (ocupacao & (7L << (casa - 3))) == 0) {
+				movimentos[n++] = Movimento.codifica(casa, casa - 2, Movimento.ROQUE);
 			}
 		}
-		return mat;
+		return n;
 	}
 }
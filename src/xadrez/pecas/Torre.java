@@ -1,9 +1,10 @@
 package xadrez.pecas;
 
-import tabuleiro.Posicao;
 import tabuleiro.Tabuleiro;
+import xadrez.Bitboards;
 import xadrez.Cor;
 import xadrez.PecaXadrez;
+import xadrez.TipoPeca;
 
 public class Torre extends PecaXadrez {
 
@@ -12,56 +13,20 @@ public class Torre extends PecaXadrez {
 	}
 
 	@Override
-	public String toString() {
-		return "T";
+	public TipoPeca getTipo() {
+		return TipoPeca.TORRE;
 	}
 
 	@Override
-	public boolean[][] movimentosPossiveis() {
-		boolean[][] mat = new boolean[getTabuleiro().getLinhas()][getTabuleiro().getColunas()];
-
-		Posicao p = new Posicao(0, 0);
-
-		// Para cima
-		p.setValores(posicao.getLinha() - 1, posicao.getColuna());
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setLinha(p.getLinha() - 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para esquerda
-		p.setValores(posicao.getLinha(), posicao.getColuna() - 1);
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setColuna(p.getColuna() - 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para direita
-		p.setValores(posicao.getLinha(), posicao.getColuna() + 1);
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setColuna(p.getColuna() + 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
-
-		// Para baixo
-		p.setValores(posicao.getLinha() + 1, posicao.getColuna());
-		while (getTabuleiro().existePosicao(p) && !getTabuleiro().haUmaPeca(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-			p.setLinha(p.getLinha() + 1);
-		}
-		if (getTabuleiro().existePosicao(p) && haPecaOponente(p)) {
-			mat[p.getLinha()][p.getColuna()] = true;
-		}
+	public int geraMovimentos(int[] movimentos, int n) {
+		int casa = getCasa();
+		long destinos = Bitboards.torre(casa, getTabuleiro().getOcupacao()) & ~pecasProprias();
+		return adicionaMovimentos(movimentos, n, casa, destinos);
+	}
 
-		return mat;
+	@Override
+	public String toString() {
+		return "T";
 	}
+
 }
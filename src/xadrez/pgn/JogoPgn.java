@@ -0,0 +1,89 @@
+package xadrez.pgn;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import xadrez.PartidaXadrez;
+
+// Estado de uma partida lida do PGN. O leitor reaproveita a mesma instancia, e a mesma
+// PartidaXadrez, para todas as partidas do arquivo
+public class JogoPgn {
+
+	private final PartidaXadrez partida;
+	private final Map<String, String> tags = new LinkedHashMap<>();
+	private int[] movimentos = new int[256];
+	private int quantidade;
+	private long numero;
+	private String resultado;
+	private String erro;
+
+	JogoPgn(PartidaXadrez partida) {
+		this.partida = partida;
+	}
+
+	// Numero da partida no arquivo, a partir de 1
+	public long getNumero() {
+		return numero;
+	}
+
+	public String getTag(String nome) {
+		return tags.get(nome);
+	}
+
+	public Map<String, String> getTags() {
+		return Collections.unmodifiableMap(tags);
+	}
+
+	// Posicao depois do ultimo lance aplicado
+	public PartidaXadrez getPartida() {
+		return partida;
+	}
+
+	// Movimentos codificados (ver Movimento), validos de 0 ate getQuantidade() - 1
+	public int[] getMovimentos() {
+		return movimentos;
+	}
+
+	public int getQuantidade() {
+		return quantidade;
+	}
+
+	public String getResultado() {
+		return resultado;
+	}
+
+	// Mensagem do primeiro lance que nao pode ser aplicado, ou null se a partida foi reproduzida inteira
+	public String getErro() {
+		return erro;
+	}
+
+	void inicia() {
+		numero++;
+		tags.clear();
+		quantidade = 0;
+		resultado = null;
+		erro = null;
+	}
+
+	void adicionaTag(String nome, String valor) {
+		tags.put(nome, valor);
+	}
+
+	void adiciona(int movimento) {
+		if (quantidade == movimentos.length) {
+			movimentos = Arrays.copyOf(movimentos, quantidade * 2);
+		}
+		movimentos[quantidade++] = movimento;
+	}
+
+	void setResultado(String resultado) {
+		this.resultado = resultado;
+	}
+
+	void setErro(String erro) {
+		this.erro = erro;
+	}
+
+}
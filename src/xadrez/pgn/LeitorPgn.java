@@ -0,0 +1,274 @@
+package xadrez.pgn;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import xadrez.ChessException;
+import xadrez.Movimento;
+import xadrez.PartidaXadrez;
+
+// Leitor de PGN em fluxo: le o canal em blocos de um buffer direto reaproveitado, sem carregar
+// o arquivo, e reproduz cada partida na mesma PartidaXadrez resolvendo os lances SAN
+public class LeitorPgn {
+
+	private static final int TAMANHO_BUFFER = 1 << 16;
+
+	private static final int MOVIMENTOS = 0;
+	private static final int TAG = 1;
+	private static final int TAG_VALOR = 2;
+	private static final int TAG_ESCAPE = 3;
+	private static final int COMENTARIO = 4;
+	private static final int COMENTARIO_LINHA = 5;
+
+	private final ByteBuffer buffer;
+	private final PartidaXadrez partida = new PartidaXadrez();
+	private final JogoPgn jogo = new JogoPgn(partida);
+	private final int[] legais = new int[Movimento.MAXIMO_POR_POSICAO];
+
+	private final byte[] token = new byte[256];
+	private int tamanhoToken;
+	private final StringBuilder tag = new StringBuilder();
+
+	private OuvintePgn ouvinte;
+	private int estado;
+	private int profundidadeVariacao;
+	private boolean emJogo;
+	private boolean posicaoPronta;
+	private long partidas;
+
+	public LeitorPgn() {
+		this(TAMANHO_BUFFER);
+	}
+
+	public LeitorPgn(int tamanhoBuffer) {
+		buffer = ByteBuffer.allocateDirect(tamanhoBuffer);
+	}
+
+	public long le(Path arquivo, OuvintePgn ouvinte) throws IOException {
+		try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+			return le(canal, ouvinte);
+		}
+	}
+
+	// Le todas as partidas do canal e devolve quantas foram entregues ao ouvinte
+	public long le(ReadableByteChannel canal, OuvintePgn ouvinte) throws IOException {
+		this.ouvinte = ouvinte;
+		estado = MOVIMENTOS;
+		profundidadeVariacao = 0;
+		tamanhoToken = 0;
+		emJogo = false;
+		partidas = 0;
+
+		buffer.clear();
+		while (canal.read(buffer) >= 0) {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				processa(buffer.get());
+			}
+			buffer.clear();
+		}
+		fimDeToken();
+		if (emJogo) {
+			fimDeJogo("*");
+		}
+		return partidas;
+	}
+
+	private void processa(byte c) {
+		switch (estado) {
+		case TAG:
+			if (c == '"') {
+				estado = TAG_VALOR;
+			} else if (c == ']') {
+				fimDeTag();
+				estado = MOVIMENTOS;
+				return;
+			}
+			tag.append((char) (c & 0xFF));
+			return;
+		case TAG_VALOR:
+			if (c == '\\') {
+				estado = TAG_ESCAPE;
+				return;
+			}
+			if (c == '"') {
+				estado = TAG;
+			}
+			tag.append((char) (c & 0xFF));
+			return;
+		case TAG_ESCAPE:
+			tag.append((char) (c & 0xFF));
+			estado = TAG_VALOR;
+			return;
+		case COMENTARIO:
+			if (c == '}') {
+				estado = MOVIMENTOS;
+			}
+			return;
+		case COMENTARIO_LINHA:
+			if (c == '\n') {
+				estado = MOVIMENTOS;
+			}
+			return;
+		default:
+			break;
+		}
+
+		switch (c) {
+		case ' ':
+		case '\t':
+		case '\r':
+		case '\n':
+			fimDeToken();
+			break;
+		case '[':
+			fimDeToken();
+			if (profundidadeVariacao > 0) {
+				break;
+			}
+			if (emJogo && (posicaoPronta || jogo.getQuantidade() > 0)) {
+				fimDeJogo("*");
+			}
+			iniciaJogo();
+			tag.setLength(0);
+			estado = TAG;
+			break;
+		case '{':
+			fimDeToken();
+			estado = COMENTARIO;
+			break;
+		case ';':
+			fimDeToken();
+			estado = COMENTARIO_LINHA;
+			break;
+		case '(':
+			fimDeToken();
+			profundidadeVariacao++;
+			break;
+		case ')':
+			fimDeToken();
+			if (profundidadeVariacao > 0) {
+				profundidadeVariacao--;
+			}
+			break;
+		default:
+			if (tamanhoToken < token.length) {
+				token[tamanhoToken++] = c;
+			}
+		}
+	}
+
+	private void iniciaJogo() {
+		if (!emJogo) {
+			emJogo = true;
+			posicaoPronta = false;
+			jogo.inicia();
+		}
+	}
+
+	private void fimDeTag() {
+		int espaco = tag.indexOf(" ");
+		int aspas = tag.indexOf("\"");
+		if (espaco <= 0 || aspas < 0 || tag.length() < aspas + 2) {
+			return;
+		}
+		jogo.adicionaTag(tag.substring(0, espaco), tag.substring(aspas + 1, tag.lastIndexOf("\"")));
+	}
+
+	private void fimDeToken() {
+		if (tamanhoToken == 0) {
+			return;
+		}
+		int tamanho = tamanhoToken;
+		tamanhoToken = 0;
+		if (profundidadeVariacao > 0 || token[0] == '$') {
+			return;
+		}
+		if (eResultado(tamanho)) {
+			iniciaJogo();
+			fimDeJogo(new String(token, 0, tamanho, StandardCharsets.ISO_8859_1));
+			return;
+		}
+
+		// Numero do lance, grudado ou nao no lance seguinte: "12." "12..." "12.e4"
+		int inicio = 0;
+		if (token[0] >= '1' && token[0] <= '9') {
+			while (inicio < tamanho && token[inicio] >= '0' && token[inicio] <= '9') {
+				inicio++;
+			}
+			if (inicio < tamanho && token[inicio] != '.') {
+				inicio = 0;
+			}
+		}
+		while (inicio < tamanho && token[inicio] == '.') {
+			inicio++;
+		}
+		if (inicio == tamanho) {
+			return;
+		}
+		if (inicio > 0) {
+			System.arraycopy(token, inicio, token, 0, tamanho - inicio);
+			tamanho -= inicio;
+		}
+		aplicaLance(tamanho);
+	}
+
+	private boolean eResultado(int tamanho) {
+		if (tamanho == 1) {
+			return token[0] == '*';
+		}
+		if (tamanho == 3) {
+			return (token[0] == '1' && token[1] == '-' && token[2] == '0')
+					|| (token[0] == '0' && token[1] == '-' && token[2] == '1');
+		}
+		return tamanho == 7 && token[0] == '1' && token[1] == '/' && token[2] == '2' && token[3] == '-'
+				&& token[4] == '1' && token[5] == '/' && token[6] == '2';
+	}
+
+	private void aplicaLance(int tamanho) {
+		iniciaJogo();
+		preparaPosicao();
+		if (jogo.getErro() != null) {
+			return;
+		}
+		int movimento = San.resolve(partida, token, tamanho, legais);
+		if (movimento < 0) {
+			jogo.setErro("Lance invalido ou ambiguo no meio-lance " + (jogo.getQuantidade() + 1) + ": "
+					+ new String(token, 0, tamanho, StandardCharsets.ISO_8859_1));
+			return;
+		}
+		partida.makeMove(movimento);
+		jogo.adiciona(movimento);
+	}
+
+	private void preparaPosicao() {
+		if (posicaoPronta) {
+			return;
+		}
+		posicaoPronta = true;
+		String fen = jogo.getTag("FEN");
+		try {
+			if (fen == null) {
+				partida.reinicia();
+			} else {
+				partida.reinicia(fen);
+			}
+		} catch (ChessException e) {
+			jogo.setErro(e.getMessage());
+		}
+	}
+
+	private void fimDeJogo(String resultado) {
+		preparaPosicao();
+		jogo.setResultado(resultado);
+		emJogo = false;
+		partidas++;
+		ouvinte.partidaLida(jogo);
+	}
+
+}
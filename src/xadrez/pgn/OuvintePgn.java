@@ -0,0 +1,8 @@
+package xadrez.pgn;
+
+public interface OuvintePgn {
+
+	// Chamado ao fim de cada partida; o objeto e reaproveitado na partida seguinte
+	void partidaLida(JogoPgn jogo);
+
+}
@@ -0,0 +1,144 @@
+package xadrez.pgn;
+
+import xadrez.Movimento;
+import xadrez.PartidaXadrez;
+import xadrez.PecaXadrez;
+import xadrez.TipoPeca;
+
+// Resolve lances em notacao algebrica padrao (SAN, letras em ingles) contra os movimentos legais
+public final class San {
+
+	private San() {
+	}
+
+	public static int resolve(PartidaXadrez partida, CharSequence san) {
+		byte[] bytes = new byte[san.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) san.charAt(i);
+		}
+		return resolve(partida, bytes, bytes.length, new int[Movimento.MAXIMO_POR_POSICAO]);
+	}
+
+	// Devolve o movimento codificado, ou -1 se o lance for invalido, ilegal ou ambiguo
+	public static int resolve(PartidaXadrez partida, byte[] san, int tamanho, int[] legais) {
+		int fim = tamanho;
+		while (fim > 0 && (san[fim - 1] == '+' || san[fim - 1] == '#' || san[fim - 1] == '!' || san[fim - 1] == '?')) {
+			fim--;
+		}
+		if (fim < 2) {
+			return -1;
+		}
+		int n = partida.legalMoves(legais);
+
+		// #MovimentoEspecial Roque
+		if (san[0] == 'O' || san[0] == '0') {
+			boolean ladoRainha;
+			if (fim == 3 && san[1] == '-' && san[2] == san[0]) {
+				ladoRainha = false;
+			} else if (fim == 5 && san[1] == '-' && san[2] == san[0] && san[3] == '-' && san[4] == san[0]) {
+				ladoRainha = true;
+			} else {
+				return -1;
+			}
+			for (int i = 0; i < n; i++) {
+				int m = legais[i];
+				if (Movimento.tipo(m) == Movimento.ROQUE && (Movimento.destino(m) < Movimento.origem(m)) == ladoRainha) {
+					return m;
+				}
+			}
+			return -1;
+		}
+
+		int inicio = 0;
+		TipoPeca tipo = tipo(san[0]);
+		if (tipo == null) {
+			tipo = TipoPeca.PEAO;
+		} else {
+			inicio = 1;
+		}
+
+		TipoPeca promocao = null;
+		if (tipo == TipoPeca.PEAO) {
+			if (fim >= 2 && san[fim - 2] == '=') {
+				promocao = tipo(san[fim - 1]);
+				fim -= 2;
+			} else if (tipo(san[fim - 1]) != null) {
+				promocao = tipo(san[fim - 1]);
+				fim--;
+			}
+			if (promocao == TipoPeca.REI || promocao == TipoPeca.PEAO) {
+				return -1;
+			}
+		}
+		if (fim - inicio < 2) {
+			return -1;
+		}
+
+		int colunaDestino = san[fim - 2] - 'a';
+		int linhaDestino = 8 - (san[fim - 1] - '0');
+		if (colunaDestino < 0 || colunaDestino > 7 || linhaDestino < 0 || linhaDestino > 7) {
+			return -1;
+		}
+		int destino = linhaDestino * 8 + colunaDestino;
+
+		int colunaOrigem = -1;
+		int linhaOrigem = -1;
+		for (int i = inicio; i < fim - 2; i++) {
+			byte c = san[i];
+			if (c >= 'a' && c <= 'h') {
+				colunaOrigem = c - 'a';
+			} else if (c >= '1' && c <= '8') {
+				linhaOrigem = 8 - (c - '0');
+			} else if (c != 'x' && c != '-' && c != ':') {
+				return -1;
+			}
+		}
+
+		int encontrado = -1;
+		for (int i = 0; i < n; i++) {
+			int m = legais[i];
+			int origem = Movimento.origem(m);
+			if (Movimento.destino(m) != destino || (colunaOrigem >= 0 && origem % 8 != colunaOrigem)
+					|| (linhaOrigem >= 0 && origem / 8 != linhaOrigem)) {
+				continue;
+			}
+			PecaXadrez peca = partida.getPeca(origem);
+			if (peca.getTipo() != tipo) {
+				continue;
+			}
+			if (Movimento.ePromocao(m)) {
+				TipoPeca esperada = (promocao == null) ? TipoPeca.RAINHA : promocao;
+				if (Movimento.promocao(m) != esperada) {
+					continue;
+				}
+			} else if (promocao != null) {
+				continue;
+			}
+			if (encontrado >= 0) {
+				return -1;
+			}
+			encontrado = m;
+		}
+		return encontrado;
+	}
+
+	private static TipoPeca tipo(byte letra) {
+		switch (letra) {
+		case 'K':
+			return TipoPeca.REI;
+		case 'Q':
+			return TipoPeca.RAINHA;
+		case 'R':
+			return TipoPeca.TORRE;
+		case 'B':
+			return TipoPeca.BISPO;
+		case 'N':
+			return TipoPeca.CAVALO;
+		case 'P':
+			return TipoPeca.PEAO;
+		default:
+			return null;
+		}
+	}
+
+}